@@ -0,0 +1,110 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.time.LocalDate.MAX;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link AktiveTidsperioder} representerer sveipelinja som koblar underlagsperioder til tidsperiodene dei overlappar.
+ * <p>
+ * Tidsperiodene blir lest inn i kronologisk rekkefølge etter frå og med-dato og blir kun halde på så lenge dei
+ * overlappar underlagsperioda som blir kobla. Kvar tidsperiode blir dermed kun behandla for dei underlagsperiodene
+ * den faktisk overlappar, pluss ein gang til når den blir fjerna frå dei aktive periodene.
+ * <p>
+ * Algoritma krever at underlagsperiodene blir kobla i kronologisk rekkefølge, det er derfor ikkje mulig å gå
+ * tilbake i tid etter at ei underlagsperiode har blitt kobla.
+ *
+ * @author Tarjei Skorgenes
+ */
+class AktiveTidsperioder {
+    private final ArrayList<Tidsperiode<?>> aktive = new ArrayList<>();
+
+    private Iterator<? extends Tidsperiode<?>> kommande;
+
+    private Tidsperiode<?> neste;
+
+    /**
+     * Konstruerer ei ny sveipelinje over tidsperiodene.
+     *
+     * @param perioder tidsperiodene som skal koblast til underlagsperiodene, sortert kronologisk på frå og med-dato
+     */
+    AktiveTidsperioder(final Iterable<? extends Tidsperiode<?>> perioder) {
+        nullstill(perioder);
+    }
+
+    /**
+     * Startar ei ny sveipelinje over tidsperiodene, slik at sveipelinja kan gjenbrukast for eit nytt underlag.
+     * <p>
+     * Aktive tidsperioder frå forrige sveip blir fjerna.
+     *
+     * @param perioder tidsperiodene som skal koblast til underlagsperiodene, sortert kronologisk på frå og med-dato
+     * @return <code>this</code>
+     */
+    AktiveTidsperioder nullstill(final Iterable<? extends Tidsperiode<?>> perioder) {
+        this.aktive.clear();
+        this.kommande = perioder.iterator();
+        this.neste = hentNeste();
+        return this;
+    }
+
+    /**
+     * Koblar underlagsperioda til alle tidsperiodene som overlappar den.
+     * <p>
+     * Tidsperioder som startar innan underlagsperioda er slutt blir lagt til dei aktive periodene, tidsperioder
+     * som er avslutta før underlagsperioda startar blir fjerna og vil ikkje bli kobla til seinare underlagsperioder.
+     * Dei aktive tidsperiodene blir kobla til i ein operasjon pr type, utan å sjekke for duplikat.
+     *
+     * @param underlagsperiode underlagsperioda som skal koblast, må vere kronologisk etter alle tidligare kobla
+     *                         underlagsperioder
+     */
+    void kobleTil(final Underlagsperiode underlagsperiode) {
+        final LocalDate fraOgMed = underlagsperiode.fraOgMed();
+        final LocalDate tilOgMed = underlagsperiode.tilOgMed().orElse(MAX);
+        while (neste != null && !neste.fraOgMed().isAfter(tilOgMed)) {
+            aktive.add(neste);
+            neste = hentNeste();
+        }
+
+        int gjenverande = 0;
+        for (int i = 0; i < aktive.size(); i++) {
+            final Tidsperiode<?> periode = aktive.get(i);
+            if (periode.tilOgMed().orElse(MAX).isBefore(fraOgMed)) {
+                continue;
+            }
+            aktive.set(gjenverande++, periode);
+        }
+        aktive.subList(gjenverande, aktive.size()).clear();
+        underlagsperiode.kobleTilAlle(aktive);
+    }
+
+    /**
+     * Koblar underlagsperioda til alle tidsperiodene som overlappar den, i ein operasjon.
+     * <p>
+     * Sveipelinja må kun innehalde tidsperioder av nøyaktig den angitte typen.
+     *
+     * @param underlagsperiode underlagsperioda som skal koblast, må vere kronologisk etter alle tidligare kobla
+     *                         underlagsperioder
+     * @param type             typen til alle tidsperiodene i sveipelinja
+     * @see #kobleTil(Underlagsperiode)
+     */
+    void kobleTil(final Underlagsperiode underlagsperiode, final Class<?> type) {
+        final LocalDate fraOgMed = underlagsperiode.fraOgMed();
+        final LocalDate tilOgMed = underlagsperiode.tilOgMed().orElse(MAX);
+        while (neste != null && !neste.fraOgMed().isAfter(tilOgMed)) {
+            aktive.add(neste);
+            neste = hentNeste();
+        }
+        aktive.removeIf(periode -> periode.tilOgMed().orElse(MAX).isBefore(fraOgMed));
+        if (!aktive.isEmpty()) {
+            underlagsperiode.kobleTil(type, aktive);
+        }
+    }
+
+    private Tidsperiode<?> hentNeste() {
+        return kommande.hasNext() ? kommande.next() : null;
+    }
+}
@@ -1,47 +1,239 @@
 package no.spk.tidsserie.tidsperiode.underlag;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 import static java.util.Optional.ofNullable;
 
+/**
+ * {@link Annotasjonar} held på verdiane eit objekt er annotert med, pr annotasjonstype.
+ * <p>
+ * Kvar annotasjonstype blir tildelt ein fast plass første gang ein verdi blir registrert for typen, og verdiane
+ * blir lagra i ein tabell indeksert på plassen til typen. Plassen blir slått opp via ein {@link ClassValue}.
+ * Oppslag på ein annotasjonstype er dermed eit oppslag i ein tabell, utan hashing av typen og utan å opprette
+ * nye objekt. Typar som kun blir slått opp eller fjerna, blir ikkje tildelt nokon plass.
+ * <p>
+ * Tabellen blir laga stor nok til alle typane som har fått ein plass når den blir oppretta eller utvida. Den blir
+ * dermed kun utvida igjen dersom nye typar har fått ein plass sidan sist.
+ * <p>
+ * Typane blir halde på via svake referansar i ein tabell som kun blir erstatta når ein ny type blir tildelt ein
+ * plass. Oppslag frå plass til type treng dermed ingen lås, og annotasjonstypane hindrar ikkje at klassene deira
+ * blir lasta ut.
+ * <p>
+ * Tabellen blir delt når alle annotasjonane blir kopiert over til eit objekt utan annotasjonar, og blir først
+ * kopiert når eit av objekta som deler den, blir endra. Kopiering av annotasjonar til nye underlagsperioder og
+ * underlag kostar dermed det samme uavhengig av kor mange annotasjonar som blir kopiert.
+ *
+ * @author Tarjei Skorgenes
+ */
 @SuppressWarnings("unchecked")
 class Annotasjonar {
-    private final Map<Class<?>, Object> annotasjonar = new HashMap<>();
+    private static final Object[] INGEN = new Object[0];
+
+    private static final Object LAAS = new Object();
+
+    private static volatile Reference<?>[] typar = new Reference<?>[0];
+
+    private static final ClassValue<Typeplass> PLASS = new ClassValue<>() {
+        @Override
+        protected Typeplass computeValue(final Class<?> type) {
+            return new Typeplass();
+        }
+    };
+
+    private Object[] verdiar = INGEN;
+
+    // Tabellen kan vere delt med andre annotasjonar, den må i så fall kopierast før den blir endra
+    private boolean delt;
+
+    private Internering internering;
 
     <T> void registrer(final Class<? extends T> type, final T verdi) {
+        final Optional<T> v = verdi(type, verdi);
+        if (v.isPresent()) {
+            final int plass = tildelPlass(type);
+            forEndring(plass + 1)[plass] = internering == null ? v.get() : internering.kanonisk(type, v.get());
+        } else {
+            remove(type);
+        }
+    }
+
+    /**
+     * Returnerer verdien som skal registrerast for annotasjonstypen, der valgfrie verdiar er pakka ut.
+     *
+     * @param type  annotasjonstypen
+     * @param verdi annotasjonsverdien, eventuelt pakka inn i ein {@link Optional}
+     * @return verdien som skal registrerast, eller ein tom verdi dersom annotasjonen skal fjernast
+     * @throws IllegalArgumentException dersom <code>type</code> er {@link Optional}
+     */
+    static <T> Optional<T> verdi(final Class<? extends T> type, final T verdi) {
         if (Optional.class.isAssignableFrom(type)) {
             throw new IllegalArgumentException(
                     "Annotasjonar av type Optional er ikkje støtta, " +
                             "viss du vil legge til ein valgfri annotasjon må den registrerast under verdiens egen type"
             );
         }
-        Optional<T> v = ofNullable(verdi);
         if (verdi instanceof Optional) {
-            v = (Optional<T>) verdi;
-        }
-        if (v.isPresent()) {
-            annotasjonar.put(type, v.get());
-        } else {
-            annotasjonar.remove(type);
+            return (Optional<T>) verdi;
         }
+        return ofNullable(verdi);
     }
 
     <T> Optional<T> lookup(final Class<T> type) {
-        return ofNullable((T) annotasjonar.get(type));
+        return ofNullable(get(type));
     }
 
+    /**
+     * Slår opp verdien for annotasjonstypen utan å pakke den inn i ein {@link Optional}.
+     *
+     * @param type annotasjonstypen
+     * @return verdien for annotasjonstypen, eller <code>null</code> dersom objektet ikkje er annotert med typen
+     */
+    <T> T get(final Class<T> type) {
+        final int plass = plass(type);
+        return plass >= 0 && plass < verdiar.length ? (T) verdiar[plass] : null;
+    }
+
+    /**
+     * Kopierer over alle verdiane frå <code>other</code>, der verdiane frå <code>other</code> erstattar eventuelle
+     * eksisterande verdiar for samme annotasjonstype.
+     * <p>
+     * Dersom desse annotasjonane ikkje har ei internering, blir interneringa til <code>other</code> tatt med.
+     * Verdiane blir internert via interneringa til desse annotasjonane dersom den er ulik interneringa til
+     * <code>other</code>. Tabellen blir kun delt når desse annotasjonane er tomme og begge brukar samme
+     * internering.
+     *
+     * @param other annotasjonane som skal kopierast over
+     */
     void addAll(final Annotasjonar other) {
-        this.annotasjonar.putAll(other.annotasjonar);
+        if (internering == null) {
+            internering = other.internering;
+        }
+        final boolean internerer = internering != null && internering != other.internering;
+        if (verdiar.length == 0 && !internerer) {
+            verdiar = other.verdiar;
+            delt = true;
+            other.delt = true;
+            return;
+        }
+        final Object[] endra = forEndring(other.verdiar.length);
+        for (int plass = 0; plass < other.verdiar.length; plass++) {
+            final Object verdi = other.verdiar[plass];
+            if (verdi != null) {
+                endra[plass] = internerer ? internering.kanonisk(type(plass), verdi) : verdi;
+            }
+        }
+    }
+
+    /**
+     * Internerer alle verdiane og alle verdiar som blir registrert seinare, via <code>internering</code>.
+     * <p>
+     * Kopiar av annotasjonane tar med seg interneringa.
+     *
+     * @param internering interneringa som verdiane skal internerast via
+     */
+    void interner(final Internering internering) {
+        this.internering = internering;
+        for (int plass = 0; plass < verdiar.length; plass++) {
+            final Object verdi = verdiar[plass];
+            if (verdi != null) {
+                final Object kanonisk = internering.kanonisk(type(plass), verdi);
+                if (kanonisk != verdi) {
+                    forEndring(0)[plass] = kanonisk;
+                }
+            }
+        }
     }
 
-    <T extends Annoterbar<T>> T annoter(final T periode) {
-        annotasjonar.forEach(periode::annoter);
-        return periode;
+    /**
+     * Returnerer ein kopi som deler verdiane med desse annotasjonane inntil ein av dei blir endra.
+     *
+     * @return ein kopi av annotasjonane
+     */
+    Annotasjonar kopi() {
+        final Annotasjonar kopi = new Annotasjonar();
+        kopi.addAll(this);
+        return kopi;
+    }
+
+    boolean erLik(final Annotasjonar other) {
+        if (this == other || this.verdiar == other.verdiar) {
+            return true;
+        }
+        final int lengde = Math.max(verdiar.length, other.verdiar.length);
+        for (int plass = 0; plass < lengde; plass++) {
+            if (!Objects.equals(verdi(plass), other.verdi(plass))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void forEach(final BiConsumer<Class<?>, Object> handling) {
+        for (int plass = 0; plass < verdiar.length; plass++) {
+            final Object verdi = verdiar[plass];
+            if (verdi != null) {
+                handling.accept(type(plass), verdi);
+            }
+        }
     }
 
     void remove(final Class<?> type) {
-        this.annotasjonar.remove(type);
+        final int plass = plass(type);
+        if (plass >= 0 && plass < verdiar.length && verdiar[plass] != null) {
+            forEndring(0)[plass] = null;
+        }
+    }
+
+    private Object[] forEndring(final int minsteLengde) {
+        if (delt || minsteLengde > verdiar.length) {
+            verdiar = Arrays.copyOf(verdiar, Math.max(Math.max(minsteLengde, verdiar.length), typar.length));
+            delt = false;
+        }
+        return verdiar;
+    }
+
+    private Object verdi(final int plass) {
+        return plass < verdiar.length ? verdiar[plass] : null;
+    }
+
+    /**
+     * Slår opp plassen til annotasjonstypen utan å tildele den ein plass.
+     *
+     * @param type annotasjonstypen
+     * @return plassen til typen, eller <code>-1</code> dersom typen ikkje har fått nokon plass
+     */
+    private static int plass(final Class<?> type) {
+        return PLASS.get(type).plass;
+    }
+
+    private static int tildelPlass(final Class<?> type) {
+        final Typeplass typeplass = PLASS.get(type);
+        int plass = typeplass.plass;
+        if (plass < 0) {
+            synchronized (LAAS) {
+                plass = typeplass.plass;
+                if (plass < 0) {
+                    final Reference<?>[] utvida = Arrays.copyOf(typar, typar.length + 1);
+                    utvida[typar.length] = new WeakReference<>(type);
+                    typar = utvida;
+                    plass = utvida.length - 1;
+                    typeplass.plass = plass;
+                }
+            }
+        }
+        return plass;
+    }
+
+    private static Class<?> type(final int plass) {
+        return (Class<?>) typar[plass].get();
+    }
+
+    private static final class Typeplass {
+        private volatile int plass = -1;
     }
 }
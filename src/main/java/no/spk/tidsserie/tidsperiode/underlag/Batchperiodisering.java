@@ -0,0 +1,197 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link Batchperiodisering} periodiserer underlag for mange {@link Periodegruppe periodegrupper} parallelt.
+ * <p>
+ * Kvar {@link UnderlagFactory} er strengt enkelttrådsbasert, batchperiodiseringa sørgjer derfor for at kvar gruppe
+ * blir periodisert av sin eigen factory, på ein av trådane til den konfigurerte {@link Executor executoren}.
+ * <p>
+ * Underlaga blir levert til mottakaren i samme rekkefølge som gruppene kjem inn i, på tråden som kallar
+ * {@link #periodiser(Stream, BiConsumer)}. Mottakaren treng derfor ikkje vere trådsikker.
+ * <p>
+ * Antall grupper som er under arbeid samtidig er avgrensa, slik at verken input-straumen eller ferdige underlag
+ * som ventar på å bli levert, hopar seg opp i minnet dersom mottakaren eller input-straumen er treg.
+ *
+ * @author Tarjei Skorgenes
+ */
+public class Batchperiodisering {
+    private final Supplier<? extends Executor> executor;
+
+    private final boolean avsluttExecutor;
+
+    private Supplier<UnderlagFactory> factory = UnderlagFactory::new;
+
+    private int maksAntallIArbeid = 2 * Runtime.getRuntime().availableProcessors();
+
+    private Batchperiodisering(final Supplier<? extends Executor> executor, final boolean avsluttExecutor) {
+        this.executor = executor;
+        this.avsluttExecutor = avsluttExecutor;
+    }
+
+    /**
+     * Konstruerer ei ny batchperiodisering som køyrer periodiseringa på den angitte executoren.
+     * <p>
+     * Executoren blir ikkje avslutta av batchperiodiseringa, det er klientens ansvar.
+     *
+     * @param executor executoren som periodiseringa skal køyrast på
+     * @return ei ny batchperiodisering
+     * @throws NullPointerException dersom <code>executor</code> er <code>null</code>
+     */
+    public static Batchperiodisering med(final Executor executor) {
+        requireNonNull(executor, "executor er påkrevd, men var null");
+        return new Batchperiodisering(() -> executor, false);
+    }
+
+    /**
+     * Konstruerer ei ny batchperiodisering som køyrer periodiseringa på den angitte fork-join-poolen.
+     *
+     * @param pool fork-join-poolen som periodiseringa skal køyrast på
+     * @return ei ny batchperiodisering
+     * @throws NullPointerException dersom <code>pool</code> er <code>null</code>
+     * @see ForkJoinPool#commonPool()
+     */
+    public static Batchperiodisering medForkJoinPool(final ForkJoinPool pool) {
+        return med(pool);
+    }
+
+    /**
+     * Konstruerer ei ny batchperiodisering som køyrer periodiseringa av kvar gruppe på ein eigen virtuell tråd.
+     * <p>
+     * Det blir oppretta ein ny executor for kvart kall til {@link #periodiser(Stream, BiConsumer)}, executoren blir
+     * avslutta før kallet returnerer.
+     *
+     * @return ei ny batchperiodisering
+     * @see Executors#newVirtualThreadPerTaskExecutor()
+     */
+    public static Batchperiodisering medVirtuelleTraadar() {
+        return new Batchperiodisering(Executors::newVirtualThreadPerTaskExecutor, true);
+    }
+
+    /**
+     * Angir kor mange grupper som maksimalt kan vere under arbeid, eller ferdig periodisert men ikkje levert til
+     * mottakaren enda, samtidig.
+     * <p>
+     * Standardverdien er 2 grupper pr tilgjengelige prosessor.
+     *
+     * @param antall maksimalt antall grupper under arbeid samtidig
+     * @return <code>this</code>
+     * @throws IllegalArgumentException dersom <code>antall</code> er mindre enn 1
+     */
+    public Batchperiodisering maksAntallIArbeid(final int antall) {
+        if (antall < 1) {
+            throw new IllegalArgumentException("maksimalt antall grupper i arbeid må vere minst 1, men var " + antall);
+        }
+        this.maksAntallIArbeid = antall;
+        return this;
+    }
+
+    /**
+     * Angir korleis factoryen som skal periodisere kvar gruppe, skal opprettast.
+     * <p>
+     * Det blir oppretta ein ny factory for kvar gruppe, leverandøren kan dermed bli kalla frå fleire trådar samtidig.
+     * Standardoppførselen er å periodisere utan nokon {@link Observasjonsperiode} eller {@link UnderlagFactory#filtrerKoblinger filtrering}.
+     *
+     * @param factory leverandør av nye, konfigurerte factoryar som ikkje har fått lagt til nokon input-perioder
+     * @return <code>this</code>
+     * @throws NullPointerException dersom <code>factory</code> er <code>null</code>
+     */
+    public Batchperiodisering factory(final Supplier<UnderlagFactory> factory) {
+        this.factory = requireNonNull(factory, "factory er påkrevd, men var null");
+        return this;
+    }
+
+    /**
+     * Periodiserer eit underlag for kvar gruppe i <code>grupper</code> og leverer underlaga til
+     * <code>mottakar</code> i samme rekkefølge som gruppene.
+     * <p>
+     * Metoda returnerer først når alle gruppene er periodisert og levert. Dersom periodiseringa av ei gruppe feilar,
+     * blir feilen kasta vidare når det er gruppas tur til å bli levert, og ingen seinare grupper blir levert.
+     *
+     * @param <K>       nøkkeltypen til gruppene
+     * @param grupper   gruppene som det skal periodiserast underlag for
+     * @param mottakar  mottakar av nøkkelen og underlaget til kvar gruppe
+     * @throws NullPointerException dersom nokon av argumenta er <code>null</code>
+     */
+    public <K> void periodiser(final Stream<Periodegruppe<K>> grupper, final BiConsumer<? super K, ? super Underlag> mottakar) {
+        requireNonNull(grupper, "grupper er påkrevd, men var null");
+        requireNonNull(mottakar, "mottakar er påkrevd, men var null");
+
+        final Executor utfoerar = executor.get();
+        final ArrayDeque<Jobb<K>> iArbeid = new ArrayDeque<>(maksAntallIArbeid);
+        try (grupper) {
+            final Iterator<Periodegruppe<K>> kommande = grupper.iterator();
+            while (kommande.hasNext()) {
+                if (iArbeid.size() == maksAntallIArbeid) {
+                    iArbeid.poll().lever(mottakar);
+                }
+                iArbeid.add(start(kommande.next(), utfoerar));
+            }
+            while (!iArbeid.isEmpty()) {
+                iArbeid.poll().lever(mottakar);
+            }
+        } finally {
+            iArbeid.forEach(Jobb::avbryt);
+            if (avsluttExecutor) {
+                ((ExecutorService) utfoerar).close();
+            }
+        }
+    }
+
+    private <K> Jobb<K> start(final Periodegruppe<K> gruppe, final Executor utfoerar) {
+        return new Jobb<>(
+                gruppe.noekkel(),
+                CompletableFuture.supplyAsync(
+                        () -> factory
+                                .get()
+                                .addPerioder(gruppe.perioder())
+                                .periodiser(),
+                        utfoerar
+                )
+        );
+    }
+
+    private static class Jobb<K> {
+        private final K noekkel;
+
+        private final CompletableFuture<Underlag> underlag;
+
+        Jobb(final K noekkel, final CompletableFuture<Underlag> underlag) {
+            this.noekkel = noekkel;
+            this.underlag = underlag;
+        }
+
+        void lever(final BiConsumer<? super K, ? super Underlag> mottakar) {
+            final Underlag resultat;
+            try {
+                resultat = underlag.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException feil) {
+                    throw feil;
+                }
+                if (e.getCause() instanceof Error feil) {
+                    throw feil;
+                }
+                throw e;
+            }
+            mottakar.accept(noekkel, resultat);
+        }
+
+        void avbryt() {
+            underlag.cancel(false);
+        }
+    }
+}
@@ -45,6 +45,15 @@ class DetekterOverlappandePerioder implements BinaryOperator<Underlagsperiode> {
         return !overlappar.isEmpty();
     }
 
+    /**
+     * Kor mange overlappar har algoritma oppdaga hittil?
+     *
+     * @return antall par med underlagsperioder som det er oppdaga overlappar mellom
+     */
+    int antall() {
+        return overlappar.size();
+    }
+
     Stream<Underlagsperiode[]> stream() {
         return overlappar.stream();
     }
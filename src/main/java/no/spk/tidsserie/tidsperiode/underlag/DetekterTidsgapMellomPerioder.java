@@ -47,6 +47,15 @@ class DetekterTidsgapMellomPerioder implements BinaryOperator<Underlagsperiode>
         return !tidsgap.isEmpty();
     }
 
+    /**
+     * Kor mange tidsgap har algoritma oppdaga hittil?
+     *
+     * @return antall par med underlagsperioder som det er oppdaga tidsgap mellom
+     */
+    int antall() {
+        return tidsgap.size();
+    }
+
     Stream<Underlagsperiode[]> stream() {
         return tidsgap.stream();
     }
@@ -0,0 +1,73 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Internering} slår saman like annotasjonsverdiar til éin kanonisk instans pr verdi, for annotasjonstypane
+ * som interneringa er aktivert for.
+ * <p>
+ * Når eit {@link Underlag} blir {@link Underlag#interner(Internering) internert}, blir alle annotasjonsverdiar av
+ * aktiverte typar som underlaget og underlagsperiodene blir annotert med, erstatta med den første like verdien
+ * som interneringa har sett. Like verdiar på ulike underlagsperioder blir dermed samme instans, noko som sparer
+ * minne og gjer at samanlikningar av verdiane kan avgjerast på identitet.
+ * <p>
+ * Verdiane blir samanlikna via {@link Object#equals(Object)} og {@link Object#hashCode()}, interneringa må derfor
+ * kun aktiverast for annotasjonstypar som er immutable verdiobjekt.
+ * <p>
+ * Interneringa held på alle kanoniske verdiar den har sett, så lenge den er i bruk. Levetida til ei internering
+ * bør derfor avgrensast til eit underlag eller ein batch, ved at ein ny instans blir oppretta pr underlag eller
+ * batch. Ei internering kan delast mellom fleire trådar.
+ *
+ * @author Tarjei Skorgenes
+ */
+public final class Internering {
+    private final Map<Class<?>, Map<Object, Object>> verdiarPrType = new ConcurrentHashMap<>();
+
+    /**
+     * Aktiverer interneringa av annotasjonsverdiar for annotasjonstypen.
+     *
+     * @param type annotasjonstypen som verdiane skal internerast for
+     * @return <code>this</code>
+     * @throws NullPointerException dersom <code>type</code> er <code>null</code>
+     */
+    public Internering interner(final Class<?> type) {
+        requireNonNull(type, "annotasjonstype er påkrevd, men var null");
+        verdiarPrType.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        return this;
+    }
+
+    /**
+     * Er interneringa aktivert for annotasjonstypen?
+     *
+     * @param type annotasjonstypen
+     * @return <code>true</code> dersom verdiane for annotasjonstypen blir internert, <code>false</code> ellers
+     */
+    public boolean internerer(final Class<?> type) {
+        return verdiarPrType.containsKey(type);
+    }
+
+    /**
+     * Returnerer den kanoniske instansen for verdien.
+     * <p>
+     * Dersom interneringa ikkje er aktivert for annotasjonstypen, blir <code>verdi</code> returnert som den er.
+     * Ellers blir den første verdien som er lik <code>verdi</code> returnert, eller <code>verdi</code> sjølv dersom
+     * interneringa ikkje har sett ein lik verdi tidligare.
+     *
+     * @param <T>   annotasjonstypen
+     * @param type  annotasjonstypen
+     * @param verdi annotasjonsverdien
+     * @return den kanoniske instansen for verdien
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T kanonisk(final Class<? extends T> type, final T verdi) {
+        final Map<Object, Object> verdiar = verdiarPrType.get(type);
+        if (verdiar == null || verdi == null) {
+            return verdi;
+        }
+        final Object kanonisk = verdiar.putIfAbsent(verdi, verdi);
+        return kanonisk == null ? verdi : (T) kanonisk;
+    }
+}
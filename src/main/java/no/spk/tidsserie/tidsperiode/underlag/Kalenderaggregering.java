@@ -0,0 +1,156 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.time.temporal.TemporalAdjusters.firstDayOfMonth;
+import static java.time.temporal.TemporalAdjusters.firstDayOfYear;
+import static java.time.temporal.TemporalAdjusters.lastDayOfMonth;
+import static java.time.temporal.TemporalAdjusters.lastDayOfYear;
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.of;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import no.spk.tidsserie.tidsperiode.Aarstall;
+
+/**
+ * {@link Kalenderaggregering} representerer algoritmane som aggregerer resultatet av ein beregningsregel for kvar
+ * underlagsperiode pr kalenderperiode, dvs pr år eller pr måned, og som splittar underlagsperiodene ved
+ * overgangen mellom kalenderperiodene.
+ * <p>
+ * Kvar underlagsperiode bidrar til kvar kalenderperiode den overlappar med resultatet frå beregningsregelen,
+ * vekta med antall dagar underlagsperioda overlappar kalenderperioda i forhold til antall dagar i
+ * kalenderperioda. Ei underlagsperiode som dekker 1. januar til 31. mars i eit år med 365 dagar, bidrar dermed
+ * med 90 / 365 av resultatet sitt til året.
+ * <p>
+ * Sidan underlagsperiodene er sortert kronologisk og ikkje overlappar kvarandre, blir kvar kalenderperiode ferdig
+ * aggregert før neste kalenderperiode blir påbegynt. Algoritma treng derfor kun éin primitiv akkumulator og
+ * eitt pass over underlagsperiodene.
+ *
+ * @param <K> typen som identifiserer kalenderperiodene
+ * @author Tarjei Skorgenes
+ */
+class Kalenderaggregering<K> {
+    static final Kalenderaggregering<Aarstall> PER_AAR = new Kalenderaggregering<>(
+            dato -> dato.with(firstDayOfYear()),
+            dato -> dato.with(lastDayOfYear()),
+            dato -> new Aarstall(dato.getYear())
+    );
+
+    static final Kalenderaggregering<YearMonth> PER_MAANED = new Kalenderaggregering<>(
+            dato -> dato.with(firstDayOfMonth()),
+            dato -> dato.with(lastDayOfMonth()),
+            YearMonth::from
+    );
+
+    private final UnaryOperator<LocalDate> foersteDag;
+
+    private final UnaryOperator<LocalDate> sisteDag;
+
+    private final Function<LocalDate, K> noekkel;
+
+    private Kalenderaggregering(final UnaryOperator<LocalDate> foersteDag, final UnaryOperator<LocalDate> sisteDag,
+                                final Function<LocalDate, K> noekkel) {
+        this.foersteDag = foersteDag;
+        this.sisteDag = sisteDag;
+        this.noekkel = noekkel;
+    }
+
+    /**
+     * Splittar underlagsperiodene som strekker seg over fleire kalenderperioder, ved overgangen mellom
+     * kalenderperiodene.
+     * <p>
+     * Underlagsperiodene som ligg innanfor ei kalenderperiode blir tatt med uendra, delane av dei andre
+     * underlagsperiodene deler koblingane og annotasjonane til underlagsperioda dei er splitta frå, sjå
+     * {@link Underlagsperiode#del(LocalDate, Optional)}. Ei løpande siste underlagsperiode blir splitta ved
+     * slutten av kalenderperioda den startar i, resten av perioda blir framleis løpande.
+     *
+     * @param perioder underlagsperiodene, sortert i kronologisk rekkefølge
+     * @return underlagsperiodene og delane av dei, i kronologisk rekkefølge
+     */
+    ArrayList<Underlagsperiode> splitt(final List<Underlagsperiode> perioder) {
+        final ArrayList<Underlagsperiode> resultat = new ArrayList<>(perioder.size());
+        for (final Underlagsperiode periode : perioder) {
+            final Optional<LocalDate> tilOgMed = periode.tilOgMed();
+            LocalDate start = periode.fraOgMed();
+            LocalDate slutt = sisteDag.apply(start);
+            while (tilOgMed.isPresent() && slutt.isBefore(tilOgMed.get())) {
+                resultat.add(periode.del(start, of(slutt)));
+                start = slutt.plusDays(1);
+                slutt = sisteDag.apply(start);
+            }
+            if (tilOgMed.isEmpty()) {
+                resultat.add(periode.del(start, of(slutt)));
+                start = slutt.plusDays(1);
+            }
+            resultat.add(periode.del(start, tilOgMed));
+        }
+        return resultat;
+    }
+
+    /**
+     * Aggregerer resultatet av <code>regelType</code> pr kalenderperiode.
+     *
+     * @param <T>        resultattypen til beregningsregelen
+     * @param perioder   underlagsperiodene, sortert i kronologisk rekkefølge
+     * @param regelType  beregningsregelen som skal beregnast for kvar underlagsperiode
+     * @param identitet  startverdien for kvar kalenderperiode
+     * @param reduksjon  funksjonen som legg til eit vekta bidrag til akkumulert verdi for kalenderperioda
+     * @return aggregert verdi pr kalenderperiode som underlagsperiodene overlappar, i kronologisk rekkefølge
+     * @throws IllegalStateException dersom ei av underlagsperiodene er løpande
+     */
+    <T extends Number> Map<K, Double> aggreger(
+            final List<Underlagsperiode> perioder,
+            final Class<? extends BeregningsRegel<T>> regelType,
+            final double identitet,
+            final DoubleBinaryOperator reduksjon
+    ) {
+        requireNonNull(regelType, "regeltype er påkrevd, men var null");
+        requireNonNull(reduksjon, "reduksjon er påkrevd, men var null");
+        final Map<K, Double> resultat = new LinkedHashMap<>();
+
+        K gjeldande = null;
+        long gjeldandeSlutt = Long.MIN_VALUE;
+        long gjeldandeLengde = 0;
+        double akkumulert = identitet;
+        for (final Underlagsperiode periode : perioder) {
+            final long sisteDagIPerioda = periode.tilOgMed().orElseThrow(
+                    () -> new IllegalStateException(
+                            "Kalenderaggregering krev at alle underlagsperiodene er lukka, men " + periode + " er løpande"
+                    )
+            ).toEpochDay();
+            final double verdi = requireNonNull(
+                    periode.beregn(regelType),
+                    () -> "resultatet frå " + regelType.getSimpleName() + " er påkrevd, men var null for " + periode
+            ).doubleValue();
+
+            long start = periode.fraOgMed().toEpochDay();
+            while (start <= sisteDagIPerioda) {
+                if (start > gjeldandeSlutt) {
+                    if (gjeldande != null) {
+                        resultat.put(gjeldande, akkumulert);
+                    }
+                    final LocalDate dato = LocalDate.ofEpochDay(start);
+                    gjeldande = noekkel.apply(dato);
+                    gjeldandeSlutt = sisteDag.apply(dato).toEpochDay();
+                    gjeldandeLengde = gjeldandeSlutt - foersteDag.apply(dato).toEpochDay() + 1;
+                    akkumulert = identitet;
+                }
+                final long slutt = Math.min(gjeldandeSlutt, sisteDagIPerioda);
+                akkumulert = reduksjon.applyAsDouble(akkumulert, verdi * (slutt - start + 1) / gjeldandeLengde);
+                start = slutt + 1;
+            }
+        }
+        if (gjeldande != null) {
+            resultat.put(gjeldande, akkumulert);
+        }
+        return resultat;
+    }
+}
@@ -1,39 +1,165 @@
 package no.spk.tidsserie.tidsperiode.underlag;
 
-import static java.util.Collections.emptySet;
-import static java.util.Optional.ofNullable;
-import static java.util.stream.Collectors.toSet;
-
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import no.spk.tidsserie.tidsperiode.Tidsperiode;
 
+/**
+ * {@link Koblingar} held på tidsperiodene eit objekt er kobla til, gruppert pr type.
+ * <p>
+ * Typane og koblingane blir lagra i tabellar som er nøyaktig så store som dei treng å vere, der typane blir slått
+ * opp via identitet. Sidan underlagsperioder typisk er kobla til nokre få tidsperioder av nokre få typar, er eit
+ * lineært søk i typetabellen raskare og brukar mindre minne enn eit hashoppslag.
+ * <p>
+ * Koblingane blir identifisert via identitet, ikkje via {@link Object#equals(Object)}. To like, men ulike
+ * instansar av ei tidsperiode blir derfor rekna som to ulike koblingar. Kun {@link #erLik(Koblingar)} samanliknar
+ * koblingane via {@link Object#equals(Object)}.
+ * <p>
+ * Tabellen for kvar type blir aldri endra etter at den er lagt inn, ved nye koblingar blir tabellen erstatta med
+ * ein ny. Tabellane kan dermed delast mellom fleire instansar.
+ *
+ * @author Tarjei Skorgenes
+ */
 @SuppressWarnings("unchecked")
 class Koblingar {
-    private final Map<Class<?>, Set<Tidsperiode<?>>> koblingar = new HashMap<>();
+    private static final Class<?>[] INGEN_TYPAR = new Class<?>[0];
+
+    private static final Tidsperiode<?>[][] INGEN_GRUPPER = new Tidsperiode<?>[0][];
+
+    private Class<?>[] typar = INGEN_TYPAR;
+
+    private Tidsperiode<?>[][] grupper = INGEN_GRUPPER;
+
+    /**
+     * Legger til koblinga dersom den ikkje allereie er lagt til.
+     *
+     * @param kobling tidsperioda som skal leggast til
+     */
+    void add(final Tidsperiode<?> kobling) {
+        final int indeks = indeks(kobling.getClass());
+        if (indeks < 0) {
+            leggTilGruppe(kobling.getClass(), new Tidsperiode<?>[]{kobling});
+            return;
+        }
+        final Tidsperiode<?>[] gruppe = grupper[indeks];
+        for (final Tidsperiode<?> eksisterande : gruppe) {
+            if (eksisterande == kobling) {
+                return;
+            }
+        }
+        final Tidsperiode<?>[] utvida = Arrays.copyOf(gruppe, gruppe.length + 1);
+        utvida[gruppe.length] = kobling;
+        grupper[indeks] = utvida;
+    }
+
+    /**
+     * Legger til alle koblingane av den angitte typen i ein operasjon.
+     * <p>
+     * Alle koblingane må vere av nøyaktig den angitte typen, ikkje subtypar av den. Det blir ikkje sjekka om
+     * koblingane allereie er lagt til, klienten må derfor sjølv sikre at ingen av koblingane blir lagt til
+     * fleire gangar.
+     *
+     * @param type     typen til koblingane
+     * @param koblingar koblingane som skal leggast til
+     */
+    void addAll(final Class<?> type, final Collection<? extends Tidsperiode<?>> koblingar) {
+        if (koblingar.isEmpty()) {
+            return;
+        }
+        leggTil(type, koblingar.toArray(new Tidsperiode<?>[0]));
+    }
 
-    void add(Tidsperiode<?> kobling) {
-        koblingar.computeIfAbsent(
-                kobling.getClass(),
-                c -> new HashSet<>()
-        )
-                .add(kobling);
+    /**
+     * Legger til alle koblingane i ein operasjon, gruppert pr type.
+     * <p>
+     * Det blir ikkje sjekka om koblingane allereie er lagt til, klienten må derfor sjølv sikre at ingen av
+     * koblingane blir lagt til fleire gangar. Tabellen for kvar type blir kun utvida éin gong, uavhengig av kor
+     * mange koblingar av typen som blir lagt til.
+     *
+     * @param koblingar koblingane som skal leggast til
+     * @see #addAll(Class, Collection)
+     */
+    void addAll(final List<? extends Tidsperiode<?>> koblingar) {
+        final int antall = koblingar.size();
+        if (antall == 1) {
+            leggTil(koblingar.get(0).getClass(), new Tidsperiode<?>[]{koblingar.get(0)});
+            return;
+        }
+        final boolean[] lagtTil = new boolean[antall];
+        for (int i = 0; i < antall; i++) {
+            if (lagtTil[i]) {
+                continue;
+            }
+            final Class<?> type = koblingar.get(i).getClass();
+            int avType = 0;
+            for (int j = i; j < antall; j++) {
+                if (!lagtTil[j] && koblingar.get(j).getClass() == type) {
+                    avType++;
+                }
+            }
+            final Tidsperiode<?>[] gruppe = new Tidsperiode<?>[avType];
+            for (int j = i, k = 0; k < avType; j++) {
+                if (!lagtTil[j] && koblingar.get(j).getClass() == type) {
+                    gruppe[k++] = koblingar.get(j);
+                    lagtTil[j] = true;
+                }
+            }
+            leggTil(type, gruppe);
+        }
     }
 
+    /**
+     * Legger til koblingane frå <code>koblingar</code>, der koblingane av kvar type erstattar eventuelle
+     * eksisterande koblingar av samme type.
+     *
+     * @param koblingar koblingane som skal leggast til
+     */
     void addAll(final Koblingar koblingar) {
-        koblingar.koblingar.forEach((key, values) -> this.koblingar.put(key, new HashSet<>(values)));
+        for (int i = 0; i < koblingar.typar.length; i++) {
+            final int indeks = indeks(koblingar.typar[i]);
+            if (indeks < 0) {
+                leggTilGruppe(koblingar.typar[i], koblingar.grupper[i]);
+            } else {
+                grupper[indeks] = koblingar.grupper[i];
+            }
+        }
+    }
+
+    /**
+     * Sjekkar om begge inneheld dei samme koblingane, samanlikna via {@link Object#equals(Object)}.
+     *
+     * @param andre koblingane som skal samanliknast med
+     * @return <code>true</code> dersom koblingane er like
+     */
+    boolean erLik(final Koblingar andre) {
+        if (this == andre) {
+            return true;
+        }
+        if (typar.length != andre.typar.length) {
+            return false;
+        }
+        for (int i = 0; i < typar.length; i++) {
+            final int indeks = andre.indeks(typar[i]);
+            if (indeks < 0 || !inneheldSamme(grupper[i], andre.grupper[indeks])) {
+                return false;
+            }
+        }
+        return true;
     }
 
     <T extends Tidsperiode<?>> Stream<T> koblingarAvType(final Class<T> type) {
-        return ofNullable(koblingar.get(type))
-                .orElse(emptySet())
-                .stream()
+        final int indeks = indeks(type);
+        if (indeks < 0) {
+            return Stream.empty();
+        }
+        return Arrays
+                .stream(grupper[indeks])
                 .map(p -> (T) p);
     }
 
@@ -42,18 +168,22 @@ class Koblingar {
     }
 
     <T extends Tidsperiode<T>> Optional<T> koblingAvType(final Class<T> type, final Predicate<T> predikat) {
-        return koblingarAvType(type)
-                .filter(predikat)
-                .reduce((a, b) -> {
-                    // Dersom det eksisterer meir enn 1 kobling av samme type blir denne metoda kalla, ergo feilar vi alltid her
-                    // Dersom det kun eksisterer ei kobling, eller ingen koblingar, kjem vi aldri inn hit
+        final int indeks = indeks(type);
+        if (indeks < 0) {
+            return Optional.empty();
+        }
+        T treff = null;
+        for (final Tidsperiode<?> kobling : grupper[indeks]) {
+            if (predikat.test((T) kobling)) {
+                if (treff != null) {
                     throw new IllegalStateException(
-                            feilmeldingForMeirEnnEiKobling(
-                                    type,
-                                    koblingarAvType(type).collect(toSet())
-                            )
+                            feilmeldingForMeirEnnEiKobling(type, Arrays.asList(grupper[indeks]))
                     );
-                });
+                }
+                treff = (T) kobling;
+            }
+        }
+        return Optional.ofNullable(treff);
     }
 
     /**
@@ -62,14 +192,20 @@ class Koblingar {
      * @param periode underlagsperioda som koblingane skal leggast til på
      */
     void kobleTil(final HarKoblingar periode) {
-        koblingar
-                .values()
-                .stream()
-                .flatMap(Set::stream)
-                .forEach(periode::kobleTil);
+        for (final Tidsperiode<?>[] gruppe : grupper) {
+            for (final Tidsperiode<?> kobling : gruppe) {
+                periode.kobleTil(kobling);
+            }
+        }
     }
 
-    private static String feilmeldingForMeirEnnEiKobling(final Class<?> type, final Set<?> koblingar) {
+    void forEach(final BiConsumer<Class<?>, List<Tidsperiode<?>>> handling) {
+        for (int i = 0; i < typar.length; i++) {
+            handling.accept(typar[i], Arrays.asList(grupper[i]));
+        }
+    }
+
+    static String feilmeldingForMeirEnnEiKobling(final Class<?> type, final Collection<?> koblingar) {
         final StringBuilder builder = new StringBuilder();
         builder.append("Underlagsperioda er kobla til meir enn ei tidsperiode av type ");
         builder.append(type.getSimpleName());
@@ -78,4 +214,62 @@ class Koblingar {
         koblingar.forEach(k -> builder.append("- ").append(k).append('\n'));
         return builder.toString();
     }
+
+    private int indeks(final Class<?> type) {
+        for (int i = 0; i < typar.length; i++) {
+            if (typar[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void leggTil(final Class<?> type, final Tidsperiode<?>[] nye) {
+        final int indeks = indeks(type);
+        if (indeks < 0) {
+            leggTilGruppe(type, nye);
+            return;
+        }
+        final Tidsperiode<?>[] gruppe = grupper[indeks];
+        final Tidsperiode<?>[] utvida = Arrays.copyOf(gruppe, gruppe.length + nye.length);
+        System.arraycopy(nye, 0, utvida, gruppe.length, nye.length);
+        grupper[indeks] = utvida;
+    }
+
+    private void leggTilGruppe(final Class<?> type, final Tidsperiode<?>[] gruppe) {
+        typar = Arrays.copyOf(typar, typar.length + 1);
+        grupper = Arrays.copyOf(grupper, grupper.length + 1);
+        typar[typar.length - 1] = type;
+        grupper[grupper.length - 1] = gruppe;
+    }
+
+    private static boolean inneheldSamme(final Tidsperiode<?>[] a, final Tidsperiode<?>[] b) {
+        if (a == b) {
+            return true;
+        }
+        return a.length == b.length && inneheldAlle(a, b) && inneheldAlle(b, a);
+    }
+
+    private static boolean inneheldAlle(final Tidsperiode<?>[] a, final Tidsperiode<?>[] b) {
+        for (final Tidsperiode<?> kobling : b) {
+            if (!inneheld(a, kobling)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean inneheld(final Tidsperiode<?>[] koblingar, final Tidsperiode<?> kobling) {
+        for (final Tidsperiode<?> eksisterande : koblingar) {
+            if (eksisterande == kobling) {
+                return true;
+            }
+        }
+        for (final Tidsperiode<?> eksisterande : koblingar) {
+            if (eksisterande.equals(kobling)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,153 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.ofNullable;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * Ei underlagsperiode i eit {@link Kolonneunderlag}.
+ * <p>
+ * Perioda held ikkje på nokon tilstand sjølv, den er kun ein peikar til ein rad i kolonneunderlaget. Datoar,
+ * koblingar, annotasjonar og beregna verdiar blir lest frå og skrive til kolonnene til kolonneunderlaget. Fleire
+ * kolonneperioder for samme rad deler dermed tilstand, og perioda kan opprettast og kastast etter behov.
+ * <p>
+ * Perioda oppfører seg ellers likt som ei {@link Underlagsperiode} med tanke på koblingar, annotasjonar og
+ * beregningar.
+ *
+ * @author Tarjei Skorgenes
+ */
+public final class Kolonneperiode
+        implements HarKoblingar, Annoterbar<Kolonneperiode>, Beregningsperiode<Kolonneperiode> {
+    private static final Object INGEN_VERDI = new Object();
+
+    private final Kolonneunderlag underlag;
+
+    private final int rad;
+
+    Kolonneperiode(final Kolonneunderlag underlag, final int rad) {
+        this.underlag = underlag;
+        this.rad = rad;
+    }
+
+    /**
+     * Radnummeret til underlagsperioda i kolonneunderlaget.
+     *
+     * @return radnummeret til underlagsperioda
+     */
+    public int rad() {
+        return rad;
+    }
+
+    @Override
+    public LocalDate fraOgMed() {
+        return underlag.fraOgMed(rad);
+    }
+
+    @Override
+    public Optional<LocalDate> tilOgMed() {
+        return underlag.tilOgMed(rad);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T beregn(final Class<? extends BeregningsRegel<T>> regelType) throws PaakrevdAnnotasjonManglarException {
+        final Object[] kolonne = underlag.beregningskolonne(regelType);
+        if (kolonne[rad] == null) {
+            final T verdi = annotasjonFor(regelType).beregn(this);
+            kolonne[rad] = verdi == null ? INGEN_VERDI : verdi;
+        }
+        return kolonne[rad] == INGEN_VERDI ? null : (T) kolonne[rad];
+    }
+
+    @Override
+    public void kobleTil(final Tidsperiode<?> kobling) {
+        underlag.kobleTil(rad, kobling);
+    }
+
+    @Override
+    public <T extends Tidsperiode<T>> Optional<T> koblingAvType(final Class<T> type) {
+        return koblingAvType(type, p -> true);
+    }
+
+    @Override
+    public <T extends Tidsperiode<T>> Optional<T> koblingAvType(final Class<T> type, final Predicate<T> predikat) {
+        return koblingarAvType(type)
+                .filter(predikat)
+                .reduce((a, b) -> {
+                    throw new IllegalStateException(
+                            Koblingar.feilmeldingForMeirEnnEiKobling(
+                                    type,
+                                    Arrays.asList(underlag.koblingar(type, rad))
+                            )
+                    );
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Tidsperiode<?>> Stream<T> koblingarAvType(final Class<T> type) {
+        return Arrays
+                .stream(underlag.koblingar(type, rad))
+                .map(p -> (T) p);
+    }
+
+    @Override
+    public <T> T annotasjonFor(final Class<T> type) throws PaakrevdAnnotasjonManglarException {
+        return valgfriAnnotasjonFor(type).orElseThrow(() -> new PaakrevdAnnotasjonManglarException(this, type));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Optional<T> valgfriAnnotasjonFor(final Class<T> type) {
+        return ofNullable((T) underlag.annotasjon(type, rad));
+    }
+
+    @Override
+    public <T> Kolonneperiode annoter(final Class<? extends T> type, final T verdi) {
+        underlag.annoter(rad, type, verdi);
+        return this;
+    }
+
+    /**
+     * Annoterer underlagsperioda med alle annotasjonane til <code>kilde</code>.
+     * <p>
+     * Kjelda må vere ei underlagsperiode i samme kolonneunderlag.
+     *
+     * @param kilde underlagsperioda som annotasjonane skal kopierast frå
+     * @return <code>this</code>
+     * @throws IllegalArgumentException dersom kjelda tilhøyrer eit anna kolonneunderlag
+     */
+    @Override
+    public Kolonneperiode annoterFra(final Kolonneperiode kilde) {
+        if (kilde.underlag != underlag) {
+            throw new IllegalArgumentException("Kan kun annotere frå underlagsperioder i samme kolonneunderlag");
+        }
+        underlag.annoterFra(rad, kilde.rad);
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(underlag), rad);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof final Kolonneperiode other)) {
+            return false;
+        }
+        return underlag == other.underlag && rad == other.rad;
+    }
+
+    @Override
+    public String toString() {
+        return "KP[" + fraOgMed() + "->" + tilOgMed().map(LocalDate::toString).orElse("") + "]";
+    }
+}
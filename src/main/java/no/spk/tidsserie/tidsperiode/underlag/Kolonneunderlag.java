@@ -0,0 +1,294 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Kolonneunderlag} er ein kolonnebasert representasjon av eit {@link Underlag}, der tilstanden til
+ * underlagsperiodene er lagra i ein tabell pr eigenskap i staden for i eit objekt pr underlagsperiode.
+ * <p>
+ * Frå og med- og til og med-datoane blir lagra som epoch-dagar i kvar sin <code>int</code>-tabell, koblingane som
+ * ein tabell pr koblingstype og annotasjonane og beregna verdiar som ein tabell pr annotasjonstype og regeltype.
+ * Underlagsperiodene blir representert av {@link Kolonneperiode}, som kun held på underlaget og radnummeret til
+ * underlagsperioda, og som kan opprettast og kastast etter behov.
+ * <p>
+ * For underlag med mange underlagsperioder og få annotasjonstypar gir dette eit vesentleg mindre minneforbruk enn
+ * {@link Underlag}, der kvar underlagsperiode har sine eigne datoar, koblingar, annotasjonar og beregningscache.
+ * <p>
+ * Sidan epoch-dagane blir lagra som <code>int</code>, kan kolonneunderlaget kun representere datoar i eit
+ * verdiområde på om lag ±5,8 millionar år rundt 1970, noko som dekker alle reelle datoar. Ei løpande siste
+ * underlagsperiode blir støtta.
+ * <p>
+ * Kolonneunderlaget er ikkje trådsikkert.
+ *
+ * @author Tarjei Skorgenes
+ * @see #av(Underlag)
+ * @see UnderlagFactory#periodiserKolonnevis()
+ */
+public final class Kolonneunderlag implements Iterable<Kolonneperiode>, Annoterbar<Kolonneunderlag>, HarAnnotasjonar {
+    static final int LOEPANDE = Integer.MAX_VALUE;
+
+    private static final Tidsperiode<?>[] INGEN_KOBLINGAR = new Tidsperiode<?>[0];
+
+    private final int antall;
+
+    private final int[] fraOgMed;
+
+    private final int[] tilOgMed;
+
+    private final Map<Class<?>, Tidsperiode<?>[][]> koblingar = new HashMap<>();
+
+    private final Map<Class<?>, Object[]> annotasjonskolonner = new HashMap<>();
+
+    private final Map<Class<?>, Object[]> beregningar = new HashMap<>();
+
+    private final Annotasjonar annotasjonar = new Annotasjonar();
+
+    private Kolonneunderlag(final int antall) {
+        this.antall = antall;
+        this.fraOgMed = new int[antall];
+        this.tilOgMed = new int[antall];
+    }
+
+    /**
+     * Konstruerer eit nytt kolonneunderlag med dei samme underlagsperiodene, koblingane og annotasjonane som
+     * <code>underlag</code>, inkludert annotasjonane til sjølve underlaget.
+     * <p>
+     * Tidligare beregna verdiar blir ikkje tatt med.
+     *
+     * @param underlag underlaget som skal representerast kolonnevis
+     * @return eit nytt kolonneunderlag
+     * @throws NullPointerException     dersom <code>underlag</code> er <code>null</code>
+     * @throws IllegalArgumentException dersom underlaget inneheld datoar som ikkje kan representerast som
+     *                                  <code>int</code> epoch-dagar
+     */
+    public static Kolonneunderlag av(final Underlag underlag) {
+        requireNonNull(underlag, "underlag er påkrevd, men var null");
+        final List<Underlagsperiode> perioder = underlag.toList();
+        final Kolonneunderlag kolonner = new Kolonneunderlag(perioder.size());
+        for (int rad = 0; rad < perioder.size(); rad++) {
+            final Underlagsperiode periode = perioder.get(rad);
+            final int r = rad;
+            kolonner.fraOgMed[rad] = epochDag(periode.fraOgMed());
+            kolonner.tilOgMed[rad] = periode.tilOgMed().map(Kolonneunderlag::epochDag).orElse(LOEPANDE);
+            periode.koblingar().forEach(
+                    (type, avType) -> kolonner.koblingskolonne(type)[r] = avType.toArray(INGEN_KOBLINGAR)
+            );
+            periode.annotasjonar().forEach((type, verdi) -> kolonner.annotasjonskolonne(type)[r] = verdi);
+        }
+        kolonner.annotasjonar.addAll(underlag.annotasjonar());
+        return kolonner;
+    }
+
+    /**
+     * Konstruerer eit nytt {@link Underlag} med dei samme underlagsperiodene, koblingane og annotasjonane som
+     * kolonneunderlaget, inkludert annotasjonane til sjølve kolonneunderlaget.
+     *
+     * @return eit nytt underlag
+     */
+    public Underlag tilUnderlag() {
+        final ArrayList<Underlagsperiode> perioder = new ArrayList<>(antall);
+        for (int rad = 0; rad < antall; rad++) {
+            final Underlagsperiode periode = new Underlagsperiode(fraOgMed(rad), tilOgMed(rad));
+            for (final Map.Entry<Class<?>, Tidsperiode<?>[][]> kolonne : koblingar.entrySet()) {
+                final Tidsperiode<?>[] avType = kolonne.getValue()[rad];
+                if (avType != null) {
+                    periode.kobleTil(kolonne.getKey(), List.of(avType));
+                }
+            }
+            for (final Map.Entry<Class<?>, Object[]> kolonne : annotasjonskolonner.entrySet()) {
+                final Object verdi = kolonne.getValue()[rad];
+                if (verdi != null) {
+                    periode.annoter(kolonne.getKey(), verdi);
+                }
+            }
+            perioder.add(periode);
+        }
+        final Underlag underlag = new Underlag(perioder);
+        underlag.annotasjonar().addAll(annotasjonar);
+        return underlag;
+    }
+
+    /**
+     * Antall underlagsperioder i kolonneunderlaget.
+     *
+     * @return antall underlagsperioder
+     */
+    public int size() {
+        return antall;
+    }
+
+    /**
+     * Returnerer underlagsperioda på den angitte raden.
+     *
+     * @param rad radnummeret til underlagsperioda
+     * @return underlagsperioda på den angitte raden
+     * @throws IndexOutOfBoundsException dersom raden ikkje eksisterer
+     */
+    public Kolonneperiode periode(final int rad) {
+        if (rad < 0 || rad >= antall) {
+            throw new IndexOutOfBoundsException("rad " + rad + " eksisterer ikkje, kolonneunderlaget har " + antall + " rader");
+        }
+        return new Kolonneperiode(this, rad);
+    }
+
+    /**
+     * Returnerer ei ikkje-modifiserbar liste med underlagsperiodene i kronologisk rekkefølge.
+     * <p>
+     * Underlagsperiodene blir oppretta etter kvart som dei blir henta ut av lista.
+     *
+     * @return underlagsperiodene i kolonneunderlaget
+     */
+    public List<Kolonneperiode> toList() {
+        return new Perioder();
+    }
+
+    /**
+     * Returnerer ein kronologisk straum av underlagsperiodene i kolonneunderlaget.
+     *
+     * @return underlagsperiodene i kolonneunderlaget
+     */
+    public Stream<Kolonneperiode> stream() {
+        return toList().stream();
+    }
+
+    @Override
+    public Iterator<Kolonneperiode> iterator() {
+        return toList().iterator();
+    }
+
+    @Override
+    public <T> T annotasjonFor(final Class<T> type) throws PaakrevdAnnotasjonManglarException {
+        final T resultat = annotasjonar.get(type);
+        if (resultat == null) {
+            throw new PaakrevdAnnotasjonManglarException(this, type);
+        }
+        return resultat;
+    }
+
+    @Override
+    public <T> Optional<T> valgfriAnnotasjonFor(final Class<T> type) {
+        return annotasjonar.lookup(type);
+    }
+
+    @Override
+    public <T> Kolonneunderlag annoter(final Class<? extends T> type, final T verdi) {
+        annotasjonar.registrer(type, verdi);
+        return this;
+    }
+
+    @Override
+    public Kolonneunderlag annoterFra(final Kolonneunderlag kilde) {
+        annotasjonar.addAll(kilde.annotasjonar);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "KU" + toList();
+    }
+
+    LocalDate fraOgMed(final int rad) {
+        return LocalDate.ofEpochDay(fraOgMed[rad]);
+    }
+
+    Optional<LocalDate> tilOgMed(final int rad) {
+        if (tilOgMed[rad] == LOEPANDE) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDate.ofEpochDay(tilOgMed[rad]));
+    }
+
+    Tidsperiode<?>[] koblingar(final Class<?> type, final int rad) {
+        final Tidsperiode<?>[][] kolonne = koblingar.get(type);
+        if (kolonne == null || kolonne[rad] == null) {
+            return INGEN_KOBLINGAR;
+        }
+        return kolonne[rad];
+    }
+
+    void kobleTil(final int rad, final Tidsperiode<?> kobling) {
+        final Tidsperiode<?>[][] kolonne = koblingskolonne(kobling.getClass());
+        final Tidsperiode<?>[] eksisterande = kolonne[rad] == null ? INGEN_KOBLINGAR : kolonne[rad];
+        for (final Tidsperiode<?> periode : eksisterande) {
+            if (periode == kobling) {
+                return;
+            }
+        }
+        final Tidsperiode<?>[] nye = new Tidsperiode<?>[eksisterande.length + 1];
+        System.arraycopy(eksisterande, 0, nye, 0, eksisterande.length);
+        nye[eksisterande.length] = kobling;
+        kolonne[rad] = nye;
+    }
+
+    Object annotasjon(final Class<?> type, final int rad) {
+        final Object[] kolonne = annotasjonskolonner.get(type);
+        return kolonne == null ? null : kolonne[rad];
+    }
+
+    <T> void annoter(final int rad, final Class<? extends T> type, final T verdi) {
+        final Optional<T> v = Annotasjonar.verdi(type, verdi);
+        if (v.isPresent()) {
+            annotasjonskolonne(type)[rad] = v.get();
+        } else {
+            final Object[] kolonne = annotasjonskolonner.get(type);
+            if (kolonne != null) {
+                kolonne[rad] = null;
+            }
+        }
+    }
+
+    void annoterFra(final int rad, final int kilde) {
+        annotasjonskolonner.values().forEach(kolonne -> {
+            if (kolonne[kilde] != null) {
+                kolonne[rad] = kolonne[kilde];
+            }
+        });
+    }
+
+    Object[] beregningskolonne(final Class<?> regelType) {
+        return beregningar.computeIfAbsent(regelType, t -> new Object[antall]);
+    }
+
+    private Tidsperiode<?>[][] koblingskolonne(final Class<?> type) {
+        return koblingar.computeIfAbsent(type, t -> new Tidsperiode<?>[antall][]);
+    }
+
+    private Object[] annotasjonskolonne(final Class<?> type) {
+        return annotasjonskolonner.computeIfAbsent(type, t -> new Object[antall]);
+    }
+
+    private static int epochDag(final LocalDate dato) {
+        final long dag = dato.toEpochDay();
+        if (dag < Integer.MIN_VALUE || dag >= LOEPANDE) {
+            throw new IllegalArgumentException(
+                    "Kolonneunderlag kan ikkje representere datoar så langt fram eller tilbake i tid, men fekk " + dato
+            );
+        }
+        return (int) dag;
+    }
+
+    private class Perioder extends AbstractList<Kolonneperiode> implements RandomAccess {
+        @Override
+        public Kolonneperiode get(final int index) {
+            return periode(index);
+        }
+
+        @Override
+        public int size() {
+            return antall;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+/**
+ * {@link Noekkelindeks} er ein hashtabell frå <code>long</code>-nøklar til posisjonar i ei fil, lagra i to
+ * primitive tabellar med open adressering og lineær prøving.
+ * <p>
+ * Indeksen brukar om lag 32 bytes pr nøkkel og ingen objekt pr nøkkel, slik at den kan halde på titals millionar
+ * nøklar utan å belaste søppelsamlaren.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Noekkelindeks {
+    private static final long LEDIG = 0;
+
+    private long[] noeklar;
+
+    // Posisjonane blir lagra med 1 lagt til, slik at 0 kan indikere ein ledig plass
+    private long[] posisjonar;
+
+    private int antall;
+
+    Noekkelindeks() {
+        noeklar = new long[16];
+        posisjonar = new long[16];
+    }
+
+    /**
+     * Registrerer posisjonen til nøkkelen, eventuelt i staden for ein tidligare registrert posisjon.
+     *
+     * @param noekkel  nøkkelen
+     * @param posisjon posisjonen til nøkkelen, må vere større enn eller lik 0
+     */
+    void put(final long noekkel, final long posisjon) {
+        if ((antall + 1) * 4L > noeklar.length * 3L) {
+            utvid();
+        }
+        final int plass = plass(noeklar, posisjonar, noekkel);
+        if (posisjonar[plass] == LEDIG) {
+            antall++;
+        }
+        noeklar[plass] = noekkel;
+        posisjonar[plass] = posisjon + 1;
+    }
+
+    /**
+     * Slår opp posisjonen til nøkkelen.
+     *
+     * @param noekkel nøkkelen
+     * @return posisjonen til nøkkelen, eller -1 dersom nøkkelen ikkje er registrert
+     */
+    long get(final long noekkel) {
+        return posisjonar[plass(noeklar, posisjonar, noekkel)] - 1;
+    }
+
+    int size() {
+        return antall;
+    }
+
+    private void utvid() {
+        final long[] gamleNoeklar = noeklar;
+        final long[] gamlePosisjonar = posisjonar;
+        noeklar = new long[gamleNoeklar.length * 2];
+        posisjonar = new long[gamlePosisjonar.length * 2];
+        for (int i = 0; i < gamleNoeklar.length; i++) {
+            if (gamlePosisjonar[i] != LEDIG) {
+                final int plass = plass(noeklar, posisjonar, gamleNoeklar[i]);
+                noeklar[plass] = gamleNoeklar[i];
+                posisjonar[plass] = gamlePosisjonar[i];
+            }
+        }
+    }
+
+    private static int plass(final long[] noeklar, final long[] posisjonar, final long noekkel) {
+        final int maske = noeklar.length - 1;
+        int plass = (int) spreiing(noekkel) & maske;
+        while (posisjonar[plass] != LEDIG && noeklar[plass] != noekkel) {
+            plass = (plass + 1) & maske;
+        }
+        return plass;
+    }
+
+    private static long spreiing(final long noekkel) {
+        final long h = noekkel * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,56 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Periodegruppe} representerer alle input-periodene som eit enkelt underlag skal periodiserast ut frå,
+ * identifisert av ein nøkkel, typisk stillingsforholdet eller avtalen underlaget skal byggast for.
+ *
+ * @param <K> nøkkeltypen som identifiserer gruppa
+ * @author Tarjei Skorgenes
+ * @see Batchperiodisering
+ */
+public final class Periodegruppe<K> {
+    private final K noekkel;
+
+    private final List<? extends Tidsperiode<?>> perioder;
+
+    /**
+     * Konstruerer ei ny periodegruppe.
+     *
+     * @param noekkel  nøkkelen som identifiserer gruppa
+     * @param perioder input-periodene som underlaget for gruppa skal periodiserast ut frå
+     * @throws NullPointerException dersom nokon av argumenta er <code>null</code>
+     */
+    public Periodegruppe(final K noekkel, final List<? extends Tidsperiode<?>> perioder) {
+        this.noekkel = requireNonNull(noekkel, "nøkkel er påkrevd, men var null");
+        this.perioder = requireNonNull(perioder, "perioder er påkrevd, men var null");
+    }
+
+    /**
+     * Nøkkelen som identifiserer gruppa.
+     *
+     * @return gruppas nøkkel
+     */
+    public K noekkel() {
+        return noekkel;
+    }
+
+    /**
+     * Input-periodene som underlaget for gruppa skal periodiserast ut frå.
+     *
+     * @return gruppas input-perioder
+     */
+    public List<? extends Tidsperiode<?>> perioder() {
+        return perioder;
+    }
+
+    @Override
+    public String toString() {
+        return "Periodegruppe[" + noekkel + ", " + perioder.size() + " perioder]";
+    }
+}
@@ -0,0 +1,46 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * {@link Samanslaaing} slår saman nabo-underlagsperioder som ikkje skil seg frå kvarandre, slik at underlaget får
+ * færre underlagsperioder som må annoterast og beregnast.
+ * <p>
+ * Kva som skal reknast som like underlagsperioder blir bestemt av klienten, sjølve samanslåinga krever kun at
+ * likskapen er transitiv, slik at det er tilstrekkelig å samanlikne kvar underlagsperiode med forrige.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Samanslaaing {
+    private Samanslaaing() {
+    }
+
+    /**
+     * Slår saman alle sekvensar av nabo-underlagsperioder som er like, til ei underlagsperiode pr sekvens.
+     * <p>
+     * Underlagsperioder som ikkje er lik nokon av naboane sine blir returnert som dei er, samanslåtte
+     * underlagsperioder får koblingane og annotasjonane til første underlagsperiode i sekvensen.
+     *
+     * @param perioder kronologisk sorterte underlagsperioder utan tidsgap
+     * @param erLike   avgjer om to nabo-underlagsperioder kan slåast saman
+     * @return dei samanslåtte underlagsperiodene i kronologisk rekkefølge
+     * @see Underlagsperiode#slaaSamanMed(Underlagsperiode)
+     */
+    static ArrayList<Underlagsperiode> slaaSaman(
+            final List<Underlagsperiode> perioder,
+            final BiPredicate<Underlagsperiode, Underlagsperiode> erLike
+    ) {
+        final ArrayList<Underlagsperiode> resultat = new ArrayList<>(perioder.size());
+        int start = 0;
+        for (int i = 1; i <= perioder.size(); i++) {
+            if (i == perioder.size() || !erLike.test(perioder.get(i - 1), perioder.get(i))) {
+                final Underlagsperiode foerste = perioder.get(start);
+                resultat.add(start == i - 1 ? foerste : foerste.slaaSamanMed(perioder.get(i - 1)));
+                start = i;
+            }
+        }
+        return resultat;
+    }
+}
@@ -0,0 +1,110 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * {@link Splittdatoar} representerer datoane eit underlag skal splittast på, lagra som epoch-dagar i ein
+ * primitiv tabell.
+ * <p>
+ * Datoane blir samla inn usortert og med duplikat, for deretter å bli sortert, avgrensa og gjort unike på plass
+ * i tabellen. Det blir dermed ikkje oppretta nokon {@link LocalDate}-instansar før underlagsperiodene faktisk
+ * blir bygd.
+ * <p>
+ * Epoch-dagane blir lagra som <code>long</code> sidan {@link LocalDate#MIN} og {@link LocalDate#MAX} ligg utanfor
+ * verdiområdet til <code>int</code>.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Splittdatoar {
+    private long[] dagar;
+
+    private int antall;
+
+    /**
+     * Konstruerer ei ny tom samling splittdatoar.
+     *
+     * @param kapasitet forventa maksimalt antall datoar som vil bli lagt til
+     */
+    Splittdatoar(final int kapasitet) {
+        this.dagar = new long[Math.max(kapasitet, 1)];
+    }
+
+    /**
+     * Fjernar alle datoane frå samlinga, slik at den kan gjenbrukast ved neste periodisering utan at tabellen
+     * må allokerast på nytt.
+     *
+     * @param kapasitet forventa maksimalt antall datoar som vil bli lagt til
+     * @return <code>this</code>
+     */
+    Splittdatoar nullstill(final int kapasitet) {
+        if (dagar.length < kapasitet) {
+            dagar = new long[kapasitet];
+        }
+        antall = 0;
+        return this;
+    }
+
+    /**
+     * Legger til ein epoch-dag som underlaget skal splittast på.
+     *
+     * @param dag epoch-dagen underlaget skal splittast på
+     */
+    void leggTil(final long dag) {
+        if (antall == dagar.length) {
+            dagar = Arrays.copyOf(dagar, dagar.length * 2);
+        }
+        dagar[antall++] = dag;
+    }
+
+    /**
+     * Sorterer datoane kronologisk, avgrensar dei til å ligge mellom <code>nedreGrense</code> og
+     * <code>oevreGrense</code> og fjernar duplikat.
+     * <p>
+     * Sidan avgrensinga ikkje endrar den innbyrdes rekkefølga til datoane kan avgrensing og fjerning av duplikat
+     * gjerast i ein og same gjennomgang etter sorteringa.
+     *
+     * @param nedreGrense den tidligaste epoch-dagen som skal kunne returnerast
+     * @param oevreGrense den seinaste epoch-dagen som skal kunne returnerast
+     */
+    void sorterOgAvgrens(final long nedreGrense, final long oevreGrense) {
+        Arrays.sort(dagar, 0, antall);
+        int unike = 0;
+        for (int i = 0; i < antall; i++) {
+            final long dag = Math.min(Math.max(dagar[i], nedreGrense), oevreGrense);
+            if (unike == 0 || dagar[unike - 1] != dag) {
+                dagar[unike++] = dag;
+            }
+        }
+        antall = unike;
+    }
+
+    /**
+     * Antall datoar i samlinga.
+     *
+     * @return antall datoar
+     */
+    int antall() {
+        return antall;
+    }
+
+    /**
+     * Epoch-dagen på den angitte posisjonen.
+     *
+     * @param index posisjonen til datoen
+     * @return epoch-dagen på den angitte posisjonen
+     */
+    long dag(final int index) {
+        return dagar[index];
+    }
+
+    /**
+     * Datoen på den angitte posisjonen.
+     *
+     * @param index posisjonen til datoen
+     * @return datoen på den angitte posisjonen
+     */
+    LocalDate dato(final int index) {
+        return LocalDate.ofEpochDay(dagar[index]);
+    }
+}
@@ -0,0 +1,167 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.empty;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Straumperiodisering} periodiserer og koblar underlagsperioder ei og ei etter kvart som dei blir henta ut,
+ * ut frå input-perioder som allereie er sortert kronologisk på frå og med-dato.
+ * <p>
+ * Kun input-periodene som overlappar underlagsperioda som blir bygd, blir halde på i minnet. Input-perioder som
+ * er avslutta blir sleppt før neste underlagsperiode blir bygd, og input-perioder som startar seinare blir ikkje lest
+ * før underlagsperiodene fram til deira frå og med-dato er henta ut.
+ * <p>
+ * Underlagsperiodene blir splitta og kobla på akkurat same vis som ved {@link UnderlagFactory#periodiser()}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Straumperiodisering implements Iterator<Underlagsperiode> {
+    private final ArrayList<Tidsperiode<?>> aktive = new ArrayList<>();
+
+    private final ArrayList<Tidsperiode<?>> aktiveKoblingar = new ArrayList<>();
+
+    private final Iterator<? extends Tidsperiode<?>> input;
+
+    private final Observasjonsperiode grenser;
+
+    private final Predicate<Tidsperiode<?>> koblingsfilter;
+
+    private final long nedreGrense;
+
+    private final long oevreGrense;
+
+    private Tidsperiode<?> neste;
+
+    private LocalDate forrigeFraOgMed;
+
+    private long start;
+
+    private Underlagsperiode klar;
+
+    private boolean ferdig;
+
+    /**
+     * Konstruerer ei ny straumperiodisering.
+     *
+     * @param input          input-periodene, sortert kronologisk på frå og med-dato
+     * @param grenser        observasjonsperioda som underlagsperiodene skal avgrensast til
+     * @param koblingsfilter filter for kva input-perioder underlagsperiodene skal koblast til
+     */
+    Straumperiodisering(
+            final Iterator<? extends Tidsperiode<?>> input,
+            final Observasjonsperiode grenser,
+            final Predicate<Tidsperiode<?>> koblingsfilter
+    ) {
+        this.input = input;
+        this.grenser = grenser;
+        this.koblingsfilter = koblingsfilter;
+        this.nedreGrense = grenser.fraOgMed().toEpochDay();
+        this.oevreGrense = grenser.tilOgMed().map(dato -> dato.toEpochDay() + 1).orElse(Long.MAX_VALUE);
+        this.neste = hentNeste();
+        this.ferdig = neste == null;
+        if (!ferdig) {
+            this.start = fraOgMed(neste);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (klar == null && !ferdig) {
+            klar = byggNeste();
+        }
+        return klar != null;
+    }
+
+    @Override
+    public Underlagsperiode next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Underlagsperiode periode = klar;
+        klar = null;
+        return periode;
+    }
+
+    private Underlagsperiode byggNeste() {
+        while (neste != null && fraOgMed(neste) <= start) {
+            aktive.add(neste);
+            if (koblingsfilter.test(neste)) {
+                aktiveKoblingar.add(neste);
+            }
+            neste = hentNeste();
+        }
+        fjernAvslutta(aktive);
+        fjernAvslutta(aktiveKoblingar);
+
+        if (aktive.isEmpty() && neste == null) {
+            ferdig = true;
+            return null;
+        }
+
+        long slutt = neste != null ? fraOgMed(neste) : Long.MAX_VALUE;
+        for (final Tidsperiode<?> periode : aktive) {
+            slutt = Math.min(slutt, slutt(periode));
+        }
+
+        final Underlagsperiode periode;
+        if (slutt == Long.MAX_VALUE) {
+            periode = new Underlagsperiode(LocalDate.ofEpochDay(start), empty());
+            ferdig = true;
+        } else {
+            periode = new Underlagsperiode(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(slutt - 1));
+            start = slutt;
+        }
+        periode.kobleTilAlle(aktiveKoblingar);
+        return periode;
+    }
+
+    private void fjernAvslutta(final ArrayList<Tidsperiode<?>> perioder) {
+        perioder.removeIf(periode -> slutt(periode) <= start);
+    }
+
+    private Tidsperiode<?> hentNeste() {
+        while (input.hasNext()) {
+            final Tidsperiode<?> periode = input.next();
+            if (forrigeFraOgMed != null && periode.fraOgMed().isBefore(forrigeFraOgMed)) {
+                throw new IllegalArgumentException(
+                        "Input-periodene må vere sortert kronologisk på frå og med-dato, men "
+                                + periode
+                                + " startar før "
+                                + forrigeFraOgMed
+                );
+            }
+            forrigeFraOgMed = periode.fraOgMed();
+            if (grenser.overlapper(periode)) {
+                return periode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frå og med-datoen til perioda som epoch-dag, avgrensa til observasjonsperioda.
+     */
+    private long fraOgMed(final Tidsperiode<?> periode) {
+        return Math.max(periode.fraOgMed().toEpochDay(), nedreGrense);
+    }
+
+    /**
+     * Dagen etter til og med-datoen til perioda som epoch-dag, avgrensa til dagen etter observasjonsperioda.
+     * <p>
+     * For løpande perioder blir dagen etter observasjonsperioda brukt, eller {@link Long#MAX_VALUE} dersom også
+     * observasjonsperioda er løpande.
+     */
+    private long slutt(final Tidsperiode<?> periode) {
+        return Math.min(
+                periode.tilOgMed().map(dato -> dato.toEpochDay() + 1).orElse(Long.MAX_VALUE),
+                oevreGrense
+        );
+    }
+}
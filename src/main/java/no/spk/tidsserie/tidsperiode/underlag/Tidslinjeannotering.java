@@ -0,0 +1,93 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.time.LocalDate.MAX;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Tidslinjeannotering} annoterer underlagsperiodene i eit underlag med verdiar henta frå tidsperiodene i
+ * ei tidslinje, i eitt samla pass gjennom underlagsperiodene og tidslinja.
+ * <p>
+ * Både underlagsperiodene og tidsperiodene i tidslinja er sortert kronologisk på frå og med-dato. Tidsperiodene
+ * som sluttar før underlagsperioda som blir annotert, blir hoppa over og aldri sett på igjen, slik at
+ * annoteringa brukar lineær tid når tidsperiodene i tidslinja ikkje overlappar kvarandre.
+ *
+ * @author Tarjei Skorgenes
+ */
+final class Tidslinjeannotering {
+    private Tidslinjeannotering() {
+    }
+
+    /**
+     * Annoterer kvar underlagsperiode som overlappar ei tidsperiode i tidslinja, med verdien som
+     * <code>uttrekk</code> hentar ut frå tidsperioda.
+     *
+     * @param perioder  underlagsperiodene, sortert kronologisk
+     * @param type      annotasjonstypen
+     * @param tidslinje tidsperiodene, sortert kronologisk på frå og med-dato
+     * @param uttrekk   hentar ut annotasjonsverdien frå ei tidsperiode
+     * @throws IllegalArgumentException dersom tidslinja ikkje er sortert kronologisk på frå og med-dato
+     * @throws IllegalStateException    dersom ei underlagsperiode overlappar meir enn ei tidsperiode i tidslinja,
+     *                                  ingen av underlagsperiodene blir då annotert
+     */
+    static <P extends Tidsperiode<?>, T> void annoter(final List<Underlagsperiode> perioder,
+                                                      final Class<T> type,
+                                                      final List<? extends P> tidslinje,
+                                                      final Function<? super P, ? extends T> uttrekk) {
+        final List<? extends P> linje = tidslinje instanceof RandomAccess ? tidslinje : new ArrayList<>(tidslinje);
+        for (int i = 1; i < linje.size(); i++) {
+            if (linje.get(i).fraOgMed().isBefore(linje.get(i - 1).fraOgMed())) {
+                throw new IllegalArgumentException(
+                        "Tidslinja må vere sortert kronologisk på frå og med-dato, men "
+                                + linje.get(i)
+                                + " startar før "
+                                + linje.get(i - 1).fraOgMed()
+                );
+            }
+        }
+
+        // Treffa blir samla opp før nokon av underlagsperiodene blir annotert, slik at underlaget blir ståande
+        // uendra dersom ei av underlagsperiodene overlappar meir enn ei tidsperiode
+        final List<P> treffPrPeriode = new ArrayList<>(perioder.size());
+        int foerste = 0;
+        for (final Underlagsperiode periode : perioder) {
+            while (foerste < linje.size() && slutt(linje.get(foerste)).isBefore(periode.fraOgMed())) {
+                foerste++;
+            }
+            P treff = null;
+            for (int i = foerste; i < linje.size() && !linje.get(i).fraOgMed().isAfter(slutt(periode)); i++) {
+                final P kandidat = linje.get(i);
+                if (!kandidat.overlapper(periode)) {
+                    continue;
+                }
+                if (treff != null) {
+                    throw new IllegalStateException(
+                            "Underlagsperioda " + periode + " overlappar meir enn ei tidsperiode i tidslinja, "
+                                    + "men kan kun annoterast med éin " + type.getSimpleName()
+                                    + ".\nOverlappande tidsperioder:\n- " + treff + "\n- " + kandidat
+                    );
+                }
+                treff = kandidat;
+            }
+            treffPrPeriode.add(treff);
+        }
+
+        int indeks = 0;
+        for (final Underlagsperiode periode : perioder) {
+            final P treff = treffPrPeriode.get(indeks++);
+            if (treff != null) {
+                periode.annoter(type, uttrekk.apply(treff));
+            }
+        }
+    }
+
+    private static LocalDate slutt(final Tidsperiode<?> periode) {
+        return periode.tilOgMed().orElse(MAX);
+    }
+}
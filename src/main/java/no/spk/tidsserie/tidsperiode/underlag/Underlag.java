@@ -1,18 +1,28 @@
 package no.spk.tidsserie.tidsperiode.underlag;
 
+import static java.util.Objects.requireNonNull;
 import static java.util.Optional.of;
-import static no.spk.tidsserie.tidsperiode.underlag.Feilmeldingar.feilmeldingVedOverlappandeTidsperioder;
-import static no.spk.tidsserie.tidsperiode.underlag.Feilmeldingar.feilmeldingVedTidsgapIUnderlaget;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import no.spk.tidsserie.tidsperiode.Aarstall;
+import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
 import no.spk.tidsserie.tidsperiode.Tidsperiode;
 
 /**
@@ -108,7 +118,7 @@ import no.spk.tidsserie.tidsperiode.Tidsperiode;
  * @author Tarjei Skorgenes
  */
 public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag>, HarAnnotasjonar {
-    private final ArrayList<Underlagsperiode> perioder = new ArrayList<>();
+    private final List<Underlagsperiode> perioder;
 
     private final Annotasjonar annotasjonar = new Annotasjonar();
 
@@ -116,16 +126,69 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
      * Konstruerer eit nytt underlag ut frå ein straum med underlagsperioder sortert i kronologisk rekkefølge.
      * <p>
      * Dersom periodene ikkje er sortert eller dersom det eksisterer tidsgap mellom underlagsperiodene vil konstruksjon
-     * av nytt underlag feile.
+     * av nytt underlag feile. Valideringa blir kun utført når assertions er slått på, eller når
+     * {@link Underlagsvalidering#SYSTEMEIGENSKAP} er satt til <code>true</code>.
      *
      * @param perioder underlagsperiodene som underlaget er bygd opp av
      * @throws IllegalArgumentException dersom det blir oppdaga eit tidsgap mellom ei eller fleire av underlagsperiodene
+     *                                  og {@link Underlagsvalidering#SYSTEMEIGENSKAP} er satt til <code>true</code>
      */
     public Underlag(final Stream<Underlagsperiode> perioder) {
-        perioder.forEach(this.perioder::add);
-        assert !detekterOverlappandePerioder() : overlappandePerioderFeilmelding();
-        assert !detekterTidsgapMellomPerioder() : tidsgapMellomPerioderFeilmelding();
-        assert !detekterUsortertePerioder() : "underlaget krever at underlagsperiodene er sortert i kronologisk rekkefølge";
+        this(kopier(perioder));
+    }
+
+    /**
+     * Konstruerer eit nytt underlag som tar over eigarskapen til lista med underlagsperioder.
+     * <p>
+     * Lista blir brukt direkte utan å bli kopiert, klienten må derfor ikkje endre eller gjenbruke lista etter at
+     * underlaget er konstruert.
+     *
+     * @param perioder underlagsperiodene som underlaget er bygd opp av, sortert i kronologisk rekkefølge
+     * @see #Underlag(Stream)
+     */
+    Underlag(final List<Underlagsperiode> perioder) {
+        this(perioder, true);
+    }
+
+    /**
+     * Konstruerer eit nytt underlag som tar over eigarskapen til lista med underlagsperioder, med eller utan
+     * validering av underlagsperiodene.
+     * <p>
+     * Valideringa kan kun hoppast over når lista er eit samanhengande utsnitt av underlagsperiodene til eit anna
+     * underlag, eller når underlagsperiodene til eit anna underlag er splitta opp utan at nokon dagar er lagt til
+     * eller fjerna, sidan resultatet då arvar garantiane til det andre underlaget.
+     *
+     * @param perioder underlagsperiodene som underlaget er bygd opp av, sortert i kronologisk rekkefølge
+     * @param valider  <code>true</code> dersom underlagsperiodene skal validerast
+     */
+    private Underlag(final List<Underlagsperiode> perioder, final boolean valider) {
+        this.perioder = perioder;
+        if (valider) {
+            validerVedKonstruksjon(perioder, Underlagsvalidering.erAlltidAktiv());
+        }
+    }
+
+    /**
+     * Validerer underlagsperiodene til eit nytt underlag, enten via assertions eller alltid.
+     *
+     * @param perioder    underlagsperiodene som skal validerast
+     * @param alltidAktiv <code>true</code> dersom underlagsperiodene skal validerast også når assertions er slått av
+     * @throws IllegalArgumentException dersom <code>alltidAktiv</code> er <code>true</code> og underlagsperiodene
+     *                                  ikkje er gyldige
+     * @see Underlagsvalidering#erAlltidAktiv()
+     */
+    static void validerVedKonstruksjon(final List<Underlagsperiode> perioder, final boolean alltidAktiv) {
+        if (alltidAktiv) {
+            Underlagsvalidering.av(perioder).feilVissUgyldig();
+        } else {
+            assert erGyldig(perioder);
+        }
+    }
+
+    private static ArrayList<Underlagsperiode> kopier(final Stream<Underlagsperiode> perioder) {
+        final ArrayList<Underlagsperiode> kopi = new ArrayList<>();
+        perioder.forEach(kopi::add);
+        return kopi;
     }
 
     /**
@@ -142,7 +205,68 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
      * @return ein kronologisk straum av underlagsperiodene som inngår i underlaget, frå eldste til yngste periode
      */
     public Stream<Underlagsperiode> stream() {
-        return perioder.stream();
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returnerer ein parallell straum som innehelde underlagets underlagsperioder.
+     * <p>
+     * Underlagsperiodene er ikkje trådsikre, klienten må derfor sjølv sikre at kvar underlagsperiode kun blir
+     * brukt av ein tråd om gangen og at eventuelle beregningsreglar og annotasjonar som blir delt mellom
+     * underlagsperiodene, er trådsikre. Sjå {@link #beregnParallelt(Class, ForkJoinPool)} for ein trygg måte å
+     * beregne ein verdi for alle underlagsperiodene parallelt.
+     *
+     * @return ein parallell straum av underlagsperiodene som inngår i underlaget, i kronologisk rekkefølge
+     */
+    public Stream<Underlagsperiode> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returnerer ein spliterator over underlagsperiodene i underlaget.
+     * <p>
+     * Spliteratoren er {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED}, {@link Spliterator#ORDERED},
+     * {@link Spliterator#IMMUTABLE} og {@link Spliterator#NONNULL}, og blir splitta i to like store halvdelar
+     * ved parallell prosessering.
+     *
+     * @return ein spliterator over underlagsperiodene i underlaget
+     */
+    @Override
+    public Spliterator<Underlagsperiode> spliterator() {
+        return new Underlagsspliterator(perioder);
+    }
+
+    /**
+     * Beregnar verdien til <code>regelType</code> for alle underlagsperiodene i underlaget, fordelt på trådane i
+     * <code>pool</code>.
+     * <p>
+     * Kvar underlagsperiode blir beregna av nøyaktig ein tråd, det er dermed trygt å bruke
+     * {@link Underlagsperiode#beregn(Class)} sin cache sjølv om den ikkje er trådsikker. Beregningsregelen
+     * sjølv, og eventuelle andre reglar og annotasjonar den brukar, må derimot vere trygge å bruke frå fleire
+     * trådar samtidig dersom dei er delt mellom underlagsperiodene. Beregningsreglar utan tilstand oppfyller alltid
+     * dette.
+     * <p>
+     * Underlagsperiodene må ikkje endrast av andre trådar medan beregninga pågår.
+     *
+     * @param <T>       resultattypen til beregningsregelen
+     * @param regelType beregningsregelen som skal beregnast for kvar underlagsperiode
+     * @param pool      trådpoolen som beregninga skal utførast på
+     * @return ei ikkje-modifiserbar liste med resultatet for kvar underlagsperiode, i kronologisk rekkefølge
+     * @throws NullPointerException               dersom <code>regelType</code> eller <code>pool</code> er
+     *                                            <code>null</code>
+     * @throws PaakrevdAnnotasjonManglarException dersom ei eller fleire av underlagsperiodene ikkje er annotert
+     *                                            med beregningsregelen
+     */
+    public <T> List<T> beregnParallelt(final Class<? extends BeregningsRegel<T>> regelType, final ForkJoinPool pool) {
+        requireNonNull(regelType, "regeltype er påkrevd, men var null");
+        requireNonNull(pool, "trådpool er påkrevd, men var null");
+        return pool.invoke(
+                ForkJoinTask.adapt(
+                        () -> parallelStream()
+                                .map(periode -> periode.beregn(regelType))
+                                .toList()
+                )
+        );
     }
 
     /**
@@ -163,6 +287,11 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
      * Ettersom det ikkje er tillatt for eit underlag å inneholde gap mellom underlagsperiodene kan ikkje resultatet
      * av filtreringa medføre at det nye underlaget har tidsgap mellom ei eller fleire av underlagsperiodene. Viss så
      * blir tilfellet indikerer det ein feil i predikatet som klienten har sendt inn.
+     * <p>
+     * Predikatet blir evaluert ein gong for kvar underlagsperiode når metoda blir kalla, men underlagsperiodene blir
+     * ikkje kopiert. Det avgrensa underlaget er ei visning av underlagsperiodene til dette underlaget, og sidan
+     * eit gyldig resultat alltid er eit samanhengande utsnitt av underlagsperiodene, blir ikkje resultatet validert
+     * på nytt. Gjentatte avgrensingar kostar dermed kun ei bitmap pr avgrensing.
      *
      * @param predikat eit predikat som filtrerer bort perioder som det nye underlaget ikkje skal inneholde
      * @return ein filtrert kopi av det gjeldande underlaget, utan alle underlagsperioder som perdikatet har forkasta
@@ -170,7 +299,156 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
      *                                  underlagsperiodene
      */
     public Underlag restrict(final Predicate<Underlagsperiode> predikat) {
-        return annotasjonar.annoter(new Underlag(perioder.stream().filter(predikat)));
+        final BitSet treff = new BitSet(perioder.size());
+        for (int i = 0; i < perioder.size(); i++) {
+            if (predikat.test(perioder.get(i))) {
+                treff.set(i);
+            }
+        }
+        final List<Underlagsperiode> utval = Utval.av(perioder, treff);
+        return annotert(new Underlag(utval, !Utval.erSamanhengande(utval)));
+    }
+
+    /**
+     * Returnerer eit avgrensa underlag som kun inneheld underlagsperiodene som heilt eller delvis overlappar
+     * tidsrommet frå og med <code>fraOgMed</code> til og med <code>tilOgMed</code>.
+     * <p>
+     * Underlagsperiodene som strekker seg utanfor tidsrommet blir ikkje avkorta. Det avgrensa underlaget er ei
+     * visning av underlagsperiodene til dette underlaget, på samme vis som ved {@link #restrict(Predicate)}.
+     *
+     * @param fraOgMed første dag i tidsrommet
+     * @param tilOgMed siste dag i tidsrommet
+     * @return eit avgrensa underlag, annotert med samme annotasjonar som dette underlaget
+     * @throws NullPointerException     dersom nokon av datoane er <code>null</code>
+     * @throws IllegalArgumentException dersom <code>fraOgMed</code> er etter <code>tilOgMed</code>
+     * @see #perioderMellom(LocalDate, LocalDate)
+     */
+    public Underlag restrict(final LocalDate fraOgMed, final LocalDate tilOgMed) {
+        return annotert(new Underlag(perioderMellom(fraOgMed, tilOgMed), false));
+    }
+
+    /**
+     * Returnerer eit nytt underlag der nabo-underlagsperioder som er kobla til dei samme tidsperiodene og som har
+     * dei samme annotasjonane, er slått saman til ei underlagsperiode.
+     * <p>
+     * Koblingane og annotasjonane blir samanlikna via {@link Object#equals(Object)}. Underlagsperioder som ikkje blir
+     * slått saman blir gjenbrukt som dei er, samanslåtte underlagsperioder er nye underlagsperioder utan
+     * tidligare beregna verdiar.
+     *
+     * @return eit nytt underlag med like nabo-underlagsperioder slått saman, annotert med underlagets annotasjonar
+     * @see UnderlagFactory#slaaSamanLikeUnderlagsperioder()
+     */
+    public Underlag slaaSamanLikePerioder() {
+        return annotert(
+                new Underlag(
+                        Samanslaaing.slaaSaman(
+                                perioder,
+                                (forrige, neste) -> forrige.harLikeKoblingar(neste) && forrige.harLikeAnnotasjonar(neste)
+                        )
+                )
+        );
+    }
+
+    /**
+     * Returnerer underlagsperioda som inneheld den angitte datoen.
+     * <p>
+     * Oppslaget er eit binærsøk som utnyttar at underlagsperiodene er sortert kronologisk og ikkje overlappar
+     * kvarandre.
+     *
+     * @param dato datoen som underlagsperioda skal innehalde
+     * @return underlagsperioda som inneheld datoen, eller ein tom verdi dersom datoen ligg utanfor underlaget
+     * @throws NullPointerException dersom <code>dato</code> er <code>null</code>
+     */
+    public Optional<Underlagsperiode> periodeFor(final LocalDate dato) {
+        requireNonNull(dato, "dato er påkrevd, men var null");
+        final int index = sisteIndexTilOgMed(dato);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        final Underlagsperiode periode = perioder.get(index);
+        if (periode.tilOgMed().map(dato::isAfter).orElse(false)) {
+            return Optional.empty();
+        }
+        return of(periode);
+    }
+
+    /**
+     * Returnerer alle underlagsperiodene som overlappar tidsrommet frå og med <code>fraOgMed</code> til og med
+     * <code>tilOgMed</code>, heilt eller delvis.
+     * <p>
+     * Oppslaget er eit binærsøk i kvar ende av tidsrommet, lista som blir returnert er ein ikkje-modifiserbar
+     * visning av underlagsperiodene, ikkje ein kopi.
+     *
+     * @param fraOgMed første dag i tidsrommet
+     * @param tilOgMed siste dag i tidsrommet
+     * @return underlagsperiodene som overlappar tidsrommet, i kronologisk rekkefølge
+     * @throws NullPointerException     dersom nokon av datoane er <code>null</code>
+     * @throws IllegalArgumentException dersom <code>fraOgMed</code> er etter <code>tilOgMed</code>
+     */
+    public List<Underlagsperiode> perioderMellom(final LocalDate fraOgMed, final LocalDate tilOgMed) {
+        requireNonNull(fraOgMed, "frå og med-dato er påkrevd, men var null");
+        requireNonNull(tilOgMed, "til og med-dato er påkrevd, men var null");
+        if (fraOgMed.isAfter(tilOgMed)) {
+            throw new IllegalArgumentException(
+                    "frå og med-dato kan ikkje vere etter til og med-dato, men " + fraOgMed + " er etter " + tilOgMed
+            );
+        }
+        final int foerste = foersteIndexFraOgMed(fraOgMed);
+        final int siste = sisteIndexTilOgMed(tilOgMed);
+        if (foerste > siste) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(perioder.subList(foerste, siste + 1));
+    }
+
+    /**
+     * Returnerer index til første underlagsperiode som sluttar på eller etter den angitte datoen, dvs den første
+     * underlagsperioda som overlappar eit tidsrom som startar på datoen.
+     *
+     * @param fraOgMed første dag i tidsrommet
+     * @return index til første underlagsperiode som sluttar på eller etter datoen, eller antall underlagsperioder
+     * dersom alle underlagsperiodene sluttar før datoen
+     * @throws NullPointerException dersom <code>fraOgMed</code> er <code>null</code>
+     * @see #toList()
+     */
+    public int foersteIndexFraOgMed(final LocalDate fraOgMed) {
+        requireNonNull(fraOgMed, "frå og med-dato er påkrevd, men var null");
+        int lav = 0;
+        int hoeg = perioder.size();
+        while (lav < hoeg) {
+            final int midt = (lav + hoeg) >>> 1;
+            if (perioder.get(midt).tilOgMed().map(fraOgMed::isAfter).orElse(false)) {
+                lav = midt + 1;
+            } else {
+                hoeg = midt;
+            }
+        }
+        return lav;
+    }
+
+    /**
+     * Returnerer index til siste underlagsperiode som startar på eller før den angitte datoen, dvs den siste
+     * underlagsperioda som overlappar eit tidsrom som sluttar på datoen.
+     *
+     * @param tilOgMed siste dag i tidsrommet
+     * @return index til siste underlagsperiode som startar på eller før datoen, eller <code>-1</code> dersom alle
+     * underlagsperiodene startar etter datoen
+     * @throws NullPointerException dersom <code>tilOgMed</code> er <code>null</code>
+     * @see #toList()
+     */
+    public int sisteIndexTilOgMed(final LocalDate tilOgMed) {
+        requireNonNull(tilOgMed, "til og med-dato er påkrevd, men var null");
+        int lav = 0;
+        int hoeg = perioder.size();
+        while (lav < hoeg) {
+            final int midt = (lav + hoeg) >>> 1;
+            if (perioder.get(midt).fraOgMed().isAfter(tilOgMed)) {
+                hoeg = midt;
+            } else {
+                lav = midt + 1;
+            }
+        }
+        return lav - 1;
     }
 
     /**
@@ -189,9 +467,11 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
 
     @Override
     public <T> T annotasjonFor(final Class<T> type) throws PaakrevdAnnotasjonManglarException {
-        return annotasjonar
-                .lookup(type)
-                .orElseThrow(() -> new PaakrevdAnnotasjonManglarException(this, type));
+        final T resultat = annotasjonar.get(type);
+        if (resultat == null) {
+            throw new PaakrevdAnnotasjonManglarException(this, type);
+        }
+        return resultat;
     }
 
     @Override
@@ -212,53 +492,212 @@ public class Underlag implements Iterable<Underlagsperiode>, Annoterbar<Underlag
     }
 
     /**
-     * {@inheritDoc}
+     * Annoterer alle underlagsperioder som overlappar ei tidsperiode i tidslinja, med verdien som
+     * <code>uttrekk</code> hentar ut frå tidsperioda.
+     * <p>
+     * Annoteringa går gjennom underlagsperiodene og tidslinja parallelt i eitt pass og brukar ikkje koblingane
+     * til underlagsperiodene. Tidslinja treng derfor ikkje ha vore med i periodiseringa av underlaget, og
+     * tidsperioder som kun skal brukast til annotering, kan haldast utanfor periodiseringa og koblingane.
+     * <p>
+     * Underlagsperioder som ikkje overlappar nokon av tidsperiodene i tidslinja, blir ikkje annotert.
+     * Verdiane blir registrert på samme vis som ved {@link Underlagsperiode#annoter(Class, Object)}, ein tom
+     * {@link Optional} fjernar derfor ein eventuell eksisterande annotasjon.
+     *
+     * @param <P>       typen til tidsperiodene i tidslinja
+     * @param <T>       annotasjonstypen
+     * @param type      annotasjonstypen
+     * @param tidslinje tidsperiodene som underlagsperiodene skal annoterast frå, sortert kronologisk på frå og
+     *                  med-dato
+     * @param uttrekk   hentar ut annotasjonsverdien frå ei tidsperiode i tidslinja
+     * @return <code>this</code>
+     * @throws NullPointerException     dersom nokon av argumenta er <code>null</code>
+     * @throws IllegalArgumentException dersom tidslinja ikkje er sortert kronologisk på frå og med-dato, eller
+     *                                  <code>type</code> er {@link Optional}
+     * @throws IllegalStateException    dersom ei underlagsperiode overlappar meir enn ei tidsperiode i tidslinja,
+     *                                  ingen av underlagsperiodene blir då annotert
      */
-    @Override
-    public String toString() {
-        return "U" + perioder;
+    public <P extends Tidsperiode<?>, T> Underlag annoter(
+            final Class<T> type,
+            final List<? extends P> tidslinje,
+            final Function<? super P, ? extends T> uttrekk
+    ) {
+        requireNonNull(type, "annotasjonstype er påkrevd, men var null");
+        requireNonNull(tidslinje, "tidslinje er påkrevd, men var null");
+        requireNonNull(uttrekk, "uttrekk er påkrevd, men var null");
+        Tidslinjeannotering.annoter(perioder, type, tidslinje, uttrekk);
+        return this;
     }
 
-    private boolean detekterOverlappandePerioder() {
-        return overlappandePerioder().harOverlappande();
+    /**
+     * Internerer annotasjonsverdiane til underlaget og underlagsperiodene via <code>internering</code>.
+     * <p>
+     * Annotasjonsverdiane som underlaget og underlagsperiodene allereie er annotert med, blir erstatta med
+     * den kanoniske instansen frå interneringa. Det samme gjeld for alle annotasjonar som blir lagt til seinare,
+     * også på underlag og underlagsperioder som blir avleia frå dette underlaget, til dømes via
+     * {@link #restrict(Predicate)} eller {@link #splittPerAar()}.
+     * <p>
+     * Merk at underlagsperiodene kan vere delt med andre underlag, til dømes når underlaget er ei avgrensing av
+     * eit anna underlag. Underlagsperiodene blir då internert også sett frå det andre underlaget.
+     *
+     * @param internering interneringa som annotasjonsverdiane skal internerast via
+     * @return <code>this</code>
+     * @throws NullPointerException dersom <code>internering</code> er <code>null</code>
+     * @see Internering
+     */
+    public Underlag interner(final Internering internering) {
+        requireNonNull(internering, "internering er påkrevd, men var null");
+        annotasjonar.interner(internering);
+        for (final Underlagsperiode periode : perioder) {
+            periode.annotasjonar().interner(internering);
+        }
+        return this;
     }
 
-    private boolean detekterTidsgapMellomPerioder() {
-        return tidsgapMellomPerioder().harTidsgap();
+    /**
+     * Genererer eit nytt underlag der underlagsperiodene som strekker seg over fleire år, er splitta ved
+     * årsskifta.
+     * <p>
+     * Splittinga skjer i eitt pass over underlagsperiodene utan ny periodisering. Underlagsperiodene som ligg
+     * innanfor eitt år blir gjenbrukt uendra, dei andre blir erstatta av ei underlagsperiode pr år som deler
+     * koblingane og annotasjonane til underlagsperioda dei er splitta frå. Desse blir først kopiert dersom
+     * nokon av underlagsperiodene som deler dei, blir kobla til eller annotert med noko nytt.
+     * <p>
+     * Det nye underlaget blir annotert med samme annotasjonar som dette underlaget.
+     *
+     * @return eit nytt underlag utan underlagsperioder som strekker seg over meir enn eitt år
+     * @see #splittPerMaaned()
+     */
+    public Underlag splittPerAar() {
+        return annotert(new Underlag(Kalenderaggregering.PER_AAR.splitt(perioder), false));
     }
 
-    private boolean detekterUsortertePerioder() {
-        return !perioder.equals(
-                perioder
-                        .stream()
-                        .sorted(Tidsperiode::compare)
-                        .collect(Collectors.toList())
-        );
+    /**
+     * Genererer eit nytt underlag der underlagsperiodene som strekker seg over fleire månedar, er splitta ved
+     * månedsskifta.
+     * <p>
+     * Splittinga skjer på samme vis som ved {@link #splittPerAar()}.
+     *
+     * @return eit nytt underlag utan underlagsperioder som strekker seg over meir enn ein måned
+     */
+    public Underlag splittPerMaaned() {
+        return annotert(new Underlag(Kalenderaggregering.PER_MAANED.splitt(perioder), false));
     }
 
-    private DetekterOverlappandePerioder overlappandePerioder() {
-        final DetekterOverlappandePerioder detektor = new DetekterOverlappandePerioder();
-        this.perioder.stream().reduce(detektor);
-        return detektor;
+    /**
+     * Aggregerer resultatet av <code>regelType</code> for alle underlagsperiodene, pr år.
+     * <p>
+     * Kvar underlagsperiode bidrar til kvart år den overlappar med resultatet frå beregningsregelen, vekta med
+     * antall dagar underlagsperioda overlappar året delt på antall dagar i året. Bidraga blir lagt til ein
+     * akkumulator pr år, som startar på <code>identitet</code>, via <code>reduksjon</code>. Med summering som
+     * reduksjon blir resultatet dermed det dagvekta gjennomsnittet av resultata i året, der dagar som
+     * underlaget ikkje dekker, tel som 0.
+     * <p>
+     * Aggregeringa skjer i eitt pass over underlagsperiodene, utan å gruppere dei pr år.
+     *
+     * @param <T>       resultattypen til beregningsregelen
+     * @param regelType beregningsregelen som skal beregnast for kvar underlagsperiode
+     * @param identitet startverdien til akkumulatoren for kvart år
+     * @param reduksjon funksjonen som legg til eit vekta bidrag til akkumulert verdi for året
+     * @return aggregert verdi pr år som underlaget overlappar, i kronologisk rekkefølge
+     * @throws NullPointerException               dersom <code>regelType</code> eller <code>reduksjon</code> er
+     *                                            <code>null</code>, eller dersom beregningsregelen returnerer
+     *                                            <code>null</code>
+     * @throws IllegalStateException              dersom underlaget har ei løpande underlagsperiode
+     * @throws PaakrevdAnnotasjonManglarException dersom ei eller fleire av underlagsperiodene ikkje er annotert
+     *                                            med beregningsregelen
+     * @see #aggregerPerMaaned(Class, double, DoubleBinaryOperator)
+     */
+    public <T extends Number> Map<Aarstall, Double> aggregerPerAar(
+            final Class<? extends BeregningsRegel<T>> regelType,
+            final double identitet,
+            final DoubleBinaryOperator reduksjon
+    ) {
+        return Kalenderaggregering.PER_AAR.aggreger(perioder, regelType, identitet, reduksjon);
     }
 
-    private DetekterTidsgapMellomPerioder tidsgapMellomPerioder() {
-        final DetekterTidsgapMellomPerioder validator = new DetekterTidsgapMellomPerioder();
-        perioder.stream().reduce(validator);
-        return validator;
+    /**
+     * Aggregerer resultatet av <code>regelType</code> for alle underlagsperiodene, pr måned.
+     * <p>
+     * Aggregeringa skjer på samme vis som {@link #aggregerPerAar(Class, double, DoubleBinaryOperator)}, men
+     * bidraga blir vekta med antall dagar underlagsperioda overlappar måneden delt på antall dagar i måneden.
+     * Månedane blir identifisert via {@link YearMonth}, sidan {@link no.spk.tidsserie.tidsperiode.Maaned} ikkje
+     * har verdisemantikk.
+     *
+     * @param <T>       resultattypen til beregningsregelen
+     * @param regelType beregningsregelen som skal beregnast for kvar underlagsperiode
+     * @param identitet startverdien til akkumulatoren for kvar måned
+     * @param reduksjon funksjonen som legg til eit vekta bidrag til akkumulert verdi for måneden
+     * @return aggregert verdi pr måned som underlaget overlappar, i kronologisk rekkefølge
+     * @throws NullPointerException               dersom <code>regelType</code> eller <code>reduksjon</code> er
+     *                                            <code>null</code>, eller dersom beregningsregelen returnerer
+     *                                            <code>null</code>
+     * @throws IllegalStateException              dersom underlaget har ei løpande underlagsperiode
+     * @throws PaakrevdAnnotasjonManglarException dersom ei eller fleire av underlagsperiodene ikkje er annotert
+     *                                            med beregningsregelen
+     */
+    public <T extends Number> Map<YearMonth, Double> aggregerPerMaaned(
+            final Class<? extends BeregningsRegel<T>> regelType,
+            final double identitet,
+            final DoubleBinaryOperator reduksjon
+    ) {
+        return Kalenderaggregering.PER_MAANED.aggreger(perioder, regelType, identitet, reduksjon);
     }
 
-    private String tidsgapMellomPerioderFeilmelding() {
-        return feilmeldingVedTidsgapIUnderlaget(
-                "Eit underlag kan ikkje inneholde tidsgap mellom underlagsperiodene",
-                tidsgapMellomPerioder()
-        );
+    /**
+     * Finn tidsromma der dette underlaget er ulikt <code>forrige</code>, typisk ein tidligare versjon av samme
+     * underlag.
+     * <p>
+     * Eit tidsrom er endra dersom kun eitt av underlaga dekker det, dersom underlagsperiodene som dekker
+     * tidsrommet i dei to underlaga har ulike frå og med- eller til og med-datoar, eller dersom dei er kobla til
+     * eller annotert med ulike verdiar. Koblingar og annotasjonar blir samanlikna via
+     * {@link Object#equals(Object)}. Annotasjonane til sjølve underlaga blir ikkje samanlikna.
+     * <p>
+     * Underlaga blir samanlikna i eitt lineært pass over underlagsperiodene til begge underlaga, og tilstøytande
+     * endra tidsrom blir slått saman.
+     *
+     * @param forrige underlaget som dette underlaget skal samanliknast med
+     * @return dei endra tidsromma i kronologisk rekkefølge, tom dersom underlaga er like
+     * @throws NullPointerException dersom <code>forrige</code> er <code>null</code>
+     */
+    public List<GenerellTidsperiode> endringarFra(final Underlag forrige) {
+        requireNonNull(forrige, "forrige underlag er påkrevd, men var null");
+        return Underlagsdiff.endringar(forrige.perioder, perioder);
     }
 
-    private String overlappandePerioderFeilmelding() {
-        return feilmeldingVedOverlappandeTidsperioder(
-                "Eit underlag kan ikkje inneholde underlagsperioder som overlappar kvarandre",
-                overlappandePerioder()
-        );
+    /**
+     * Validerer underlagsperiodene i underlaget i eitt pass.
+     * <p>
+     * Underlag blir validert ved konstruksjon, så denne metoda er primært nyttig for å undersøke avvika i
+     * underlag som er konstruert utan at valideringa var aktiv, sjå {@link Underlagsvalidering}.
+     *
+     * @return resultatet av valideringa
+     */
+    public Underlagsvalidering valider() {
+        return Underlagsvalidering.av(perioder);
+    }
+
+    Annotasjonar annotasjonar() {
+        return annotasjonar;
+    }
+
+    private Underlag annotert(final Underlag underlag) {
+        underlag.annotasjonar.addAll(annotasjonar);
+        return underlag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "U" + perioder;
+    }
+
+    private static boolean erGyldig(final List<Underlagsperiode> perioder) {
+        final Underlagsvalidering validering = Underlagsvalidering.av(perioder);
+        if (!validering.erGyldig()) {
+            throw new AssertionError(validering.feilmelding());
+        }
+        return true;
     }
 }
@@ -1,26 +1,36 @@
 package no.spk.tidsserie.tidsperiode.underlag;
 
-import static java.time.LocalDate.MAX;
 import static java.time.LocalDate.MIN;
 import static java.util.Arrays.asList;
 import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingInt;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static java.util.stream.Collectors.toCollection;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import no.spk.tidsserie.tidsperiode.Aarstall;
 import no.spk.tidsserie.tidsperiode.Tidsperiode;
 
 /**
  * {@link UnderlagFactory} representerer algoritma og datasettet som eit {@link Underlag} blir bygd opp av og frå.
+ * <p>
+ * Factoryen er ikkje trådsikker. Ved periodisering av mange små underlag, kan kvar arbeidstråd gjenbruke sin eigen
+ * factory ved å {@link #nullstill() nullstille} den mellom kvar periodisering, dei interne arbeidsbufferane blir då
+ * gjenbrukt i staden for å bli allokert på nytt for kvart underlag.
  *
  * @author Tarjei Skorgenes
  */
@@ -28,8 +38,20 @@ public class UnderlagFactory {
     private final ArrayList<Tidsperiode<?>> perioder = new ArrayList<>();
     private final Observasjonsperiode grenser;
 
+    private final Splittdatoar splittdatoar = new Splittdatoar(16);
+
+    private final ArrayList<Tidsperiode<?>> koblingar = new ArrayList<>();
+
+    private final AktiveTidsperioder aktive = new AktiveTidsperioder(koblingar);
+
     private Predicate<Tidsperiode<?>> koblingsfilter = k -> true;
 
+    private boolean sortert = true;
+
+    private boolean slaaSaman = false;
+
+    private LinkedHashMap<Class<?>, ArrayList<Tidsperiode<?>>> koblingarPrType;
+
     /**
      * Konstruerer ein ny instans som kan generere underlag som er avgrensa til å ligge innanfor observasjonsperioda.
      *
@@ -68,17 +90,110 @@ public class UnderlagFactory {
     /**
      * Legger til periodene som input-data til periodiseringa som {@link #periodiser()} utfører når eit
      * {@link Underlag} blir bygd opp.
+     * <p>
+     * Factoryen held oversikt over om input-periodene er lagt til i kronologisk rekkefølge etter frå og med-dato.
+     * Dersom dei er det, typisk fordi dei kjem frå ei spørring som allereie er sortert, blir sorteringa av
+     * input-periodene hoppa over ved periodisering.
      *
      * @param perioder input-perioder som skal leggast til for seinare å brukast ved periodisering av og konstruksjon av nye underlag
      * @return <code>this</code>
+     * @see #addSortertePerioder(Stream[])
      */
     public UnderlagFactory addPerioder(Stream<? extends Tidsperiode<?>> perioder) {
         perioder
                 .filter(grenser::overlapper)
-                .forEach(this.perioder::add);
+                .forEach(this::leggTil);
+        return this;
+    }
+
+    /**
+     * Flettar saman input-periodene frå fleire straumar som kvar for seg er sortert kronologisk etter frå og
+     * med-dato, typisk ein straum pr type input-periode, og legger dei til som input-data til periodiseringa.
+     * <p>
+     * Flettinga held kun på neste periode frå kvar straum, og input-periodene blir lagt til i samme rekkefølge som
+     * ei stabil sortering av straumane etter kvarandre ville gitt. Dersom factoryen ikkje inneheld andre
+     * input-perioder som startar etter dei fletta periodene, blir sorteringa av input-periodene dermed hoppa over
+     * ved periodisering.
+     * <p>
+     * Input-periodene blir først lagt til når alle straumane er ferdig fletta, dersom flettinga feilar blir ingen av
+     * input-periodene lagt til. Straumane blir lukka når flettinga er ferdig, også dersom den feilar.
+     *
+     * @param straumar straumar med input-perioder, kvar av dei sortert kronologisk etter frå og med-dato
+     * @return <code>this</code>
+     * @throws NullPointerException     dersom nokon av straumane er <code>null</code>
+     * @throws IllegalArgumentException dersom input-periodene i ein av straumane ikkje er sortert etter frå og med-dato
+     */
+    @SafeVarargs
+    public final UnderlagFactory addSortertePerioder(final Stream<? extends Tidsperiode<?>>... straumar) {
+        final List<Stream<? extends Tidsperiode<?>>> alle = new ArrayList<>(straumar.length);
+        for (final Stream<? extends Tidsperiode<?>> straum : straumar) {
+            alle.add(straum);
+        }
+        final ArrayList<Tidsperiode<?>> fletta;
+        RuntimeException feil = null;
+        try {
+            fletta = flett(alle);
+        } catch (final RuntimeException e) {
+            feil = e;
+            throw e;
+        } finally {
+            lukk(alle, feil);
+        }
+        fletta.forEach(this::leggTil);
         return this;
     }
 
+    private ArrayList<Tidsperiode<?>> flett(final List<Stream<? extends Tidsperiode<?>>> straumar) {
+        for (final Stream<? extends Tidsperiode<?>> straum : straumar) {
+            requireNonNull(straum, "straum er påkrevd, men var null");
+        }
+        final PriorityQueue<SortertStraum> koe = new PriorityQueue<>(Math.max(straumar.size(), 1));
+        for (int i = 0; i < straumar.size(); i++) {
+            final SortertStraum straum = new SortertStraum(i, straumar.get(i).iterator());
+            if (straum.neste()) {
+                koe.add(straum);
+            }
+        }
+        final ArrayList<Tidsperiode<?>> fletta = new ArrayList<>();
+        while (!koe.isEmpty()) {
+            final SortertStraum straum = koe.poll();
+            if (grenser.overlapper(straum.gjeldande)) {
+                fletta.add(straum.gjeldande);
+            }
+            if (straum.neste()) {
+                koe.add(straum);
+            }
+        }
+        return fletta;
+    }
+
+    /**
+     * Lukkar alle straumane, også når lukking av ein av dei feilar.
+     * <p>
+     * Feil frå lukkinga blir lagt til som undertrykte feil på <code>feil</code> dersom flettinga allereie har
+     * feila, ellers blir første feil frå lukkinga kasta etter at alle straumane er forsøkt lukka.
+     */
+    private static void lukk(final List<? extends Stream<?>> straumar, final RuntimeException feil) {
+        RuntimeException foersteFeil = feil;
+        for (final Stream<?> straum : straumar) {
+            if (straum == null) {
+                continue;
+            }
+            try {
+                straum.close();
+            } catch (final RuntimeException e) {
+                if (foersteFeil == null) {
+                    foersteFeil = e;
+                } else {
+                    foersteFeil.addSuppressed(e);
+                }
+            }
+        }
+        if (feil == null && foersteFeil != null) {
+            throw foersteFeil;
+        }
+    }
+
     /**
      * Filtrerer koblingane som skal leggast til på alle {@link Underlagsperiode periodene} som inngår i underlaget
      * produsert via {@link #perioder}.
@@ -95,12 +210,84 @@ public class UnderlagFactory {
      */
     public UnderlagFactory filtrerKoblinger(final Predicate<Tidsperiode<?>> filter) {
         this.koblingsfilter = requireNonNull(filter, "filter er påkrevd, men var null");
+        this.koblingarPrType = null;
+        return this;
+    }
+
+    /**
+     * Filtrerer koblingane som skal leggast til på underlagsperiodene, slik at kun input-perioder av dei angitte
+     * typane blir kobla til underlagsperiodene.
+     * <p>
+     * Typane blir samanlikna med den eksakte klassa til input-periodene, på samme vis som ved oppslag via
+     * {@link Underlagsperiode#koblingarAvType(Class)}, input-perioder av subtypar av dei angitte typane blir derfor
+     * ikkje kobla.
+     * <p>
+     * I motsetning til {@link #filtrerKoblinger(Predicate)} kjenner factoryen her til kva typar som skal koblast.
+     * Input-perioder av andre typar blir derfor halde utanfor koblinga heilt, og input-periodene blir gruppert pr
+     * type før koblinga slik at kvar underlagsperiode får alle koblingane av ein type lagt til i ein operasjon.
+     * <p>
+     * Input-periodene av dei andre typane vil framleis bli tatt hensyn til og bidra til sjølve periodiseringa av
+     * underlaget. Ved fleire kall til denne metoda eller {@link #filtrerKoblinger(Predicate)} vil det kun vere det
+     * sist innlagte filteret som blir benytta ved periodisering.
+     *
+     * @param typar typane til input-periodene som skal koblast til underlagsperiodene
+     * @return <code>this</code>
+     * @throws NullPointerException dersom nokon av typane er <code>null</code>
+     */
+    public UnderlagFactory filtrerKoblingarAvType(final Class<?>... typar) {
+        final LinkedHashMap<Class<?>, ArrayList<Tidsperiode<?>>> prType = new LinkedHashMap<>();
+        for (final Class<?> type : typar) {
+            prType.put(requireNonNull(type, "type er påkrevd, men var null"), new ArrayList<>());
+        }
+        this.koblingsfilter = periode -> prType.containsKey(periode.getClass());
+        this.koblingarPrType = prType;
+        return this;
+    }
+
+    /**
+     * Slår saman nabo-underlagsperioder som er kobla til dei samme tidsperiodene, etter at underlaget er periodisert.
+     * <p>
+     * Underlaget blir splitta på alle frå og med- og til og med-datoar til input-periodene, også der endringa
+     * ikkje påverkar koblingane, til dømes når ei input-periode som er {@link #filtrerKoblinger(Predicate) filtrert bort}
+     * startar eller sluttar. Med samanslåing blir slike underlagsperioder slått saman, slik at underlaget får færre
+     * underlagsperioder som må annoterast og beregnast.
+     * <p>
+     * Koblingane blir samanlikna via {@link Object#equals(Object)}. Samanslåinga blir utført av {@link #periodiser()},
+     * {@link #periodiserPerAar()} og {@link #reperiodiser(Underlag, Iterable, Iterable, Consumer) reperiodiseringa},
+     * men ikkje av {@link #periodiserSomStraum(Stream) straumperiodiseringa}.
+     *
+     * @return <code>this</code>
+     * @see Underlag#slaaSamanLikePerioder()
+     */
+    public UnderlagFactory slaaSamanLikeUnderlagsperioder() {
+        this.slaaSaman = true;
+        return this;
+    }
+
+    /**
+     * Fjernar alle input-perioder som har blitt lagt til, slik at factoryen kan gjenbrukast for å periodisere eit nytt
+     * underlag.
+     * <p>
+     * Observasjonsperioda og {@link #filtrerKoblinger(Predicate) koblingsfilteret} blir behalde. Dei interne
+     * arbeidsbufferane som blir brukt under periodiseringa, blir også behalde og gjenbrukt ved neste periodisering.
+     * <p>
+     * Underlag som allereie er periodisert av factoryen blir ikkje påverka av nullstillinga.
+     *
+     * @return <code>this</code>
+     */
+    public UnderlagFactory nullstill() {
+        perioder.clear();
+        sortert = true;
+        koblingar.clear();
         return this;
     }
 
     /**
      * Konstruerer eit nytt underlag, populert med underlagsperioder mellom alle datoar der input periodene
      * endrar tilstand.
+     * <p>
+     * Underlaget tar over eigarskapen til lista med underlagsperioder som blir bygd, denne blir derfor aldri
+     * gjenbrukt mellom periodiseringar.
      *
      * @return eit nytt underlag med underlagsperioder i kronologisk rekkefølge mellom alle endringsdatoar i
      * input-periodene som ligg frå og med observasjonsperiodas start og slutt
@@ -109,71 +296,549 @@ public class UnderlagFactory {
      * @see #addPerioder(java.util.stream.Stream)
      */
     public Underlag periodiser() {
-        perioder.sort(comparing(Tidsperiode::fraOgMed));
-        return kobleTilOverlappandeTidsperioder(
-                new Underlag(
-                        byggUnderlagsperioder(alleDatoerUnderlagesPerioderSkalSplittesPaa(perioder))
+        sorterInputperioder();
+        final ArrayList<Underlagsperiode> underlagsperioder = byggUnderlagsperioder(
+                alleDatoerUnderlagesPerioderSkalSplittesPaa(perioder),
+                grenserErLøpende() && perioderErLøpende()
+        );
+        kobleTilOverlappandeTidsperioder(underlagsperioder);
+        return new Underlag(slaaSamanVedBehov(underlagsperioder));
+    }
+
+    /**
+     * Konstruerer eit nytt kolonneunderlag, periodisert på samme vis som ved {@link #periodiser()}.
+     * <p>
+     * Underlagsperiodene som blir bygd undervegs er kortlevde, kun kolonneunderlaget blir halde på etter at metoda
+     * returnerer.
+     *
+     * @return eit nytt kolonneunderlag med underlagsperioder i kronologisk rekkefølge
+     * @see Kolonneunderlag#av(Underlag)
+     */
+    public Kolonneunderlag periodiserKolonnevis() {
+        return Kolonneunderlag.av(periodiser());
+    }
+
+    /**
+     * Konstruerer eit underlag pr år som observasjonsperioda overlappar, i ein og samme periodisering av
+     * input-periodene.
+     * <p>
+     * Underlaget for kvart år blir det samme som ein ville fått ved å {@link #periodiser() periodisere} input-periodene
+     * med observasjonsperioda avgrensa til det aktuelle året. Input-periodene blir likevel kun sortert, splitta og
+     * kobla ein gong, årsskifta blir lagt inn som ekstra splittdatoar i underlagsperiodene som strekker seg over
+     * eit årsskifte.
+     * <p>
+     * Resultatet inneheld eit underlag for kvart år observasjonsperioda overlappar, år som ingen input-perioder
+     * overlappar får eit tomt underlag.
+     *
+     * @return underlaga for kvart år som observasjonsperioda overlappar, i kronologisk rekkefølge
+     * @throws IllegalStateException dersom observasjonsperioda er løpande
+     * @see Observasjonsperiode#overlappendeAar()
+     */
+    public Map<Aarstall, Underlag> periodiserPerAar() {
+        final LocalDate sisteDag = grenser
+                .tilOgMed()
+                .orElseThrow(() -> new IllegalStateException("Periodisering pr år for ei observasjonsperiode uten ende støttes ikke."));
+        sorterInputperioder();
+        final ArrayList<Underlagsperiode> underlagsperioder = byggUnderlagsperioderPerAar(
+                alleDatoerUnderlagesPerioderSkalSplittesPaa(perioder)
+        );
+        kobleTilOverlappandeTidsperioder(underlagsperioder);
+        final boolean[] dekt = dektAvInputperioder(underlagsperioder);
+
+        final LinkedHashMap<Aarstall, Underlag> perAar = new LinkedHashMap<>();
+        int neste = 0;
+        for (int aar = grenser.fraOgMed().getYear(); aar <= sisteDag.getYear(); aar++) {
+            int fraOgMed = neste;
+            while (neste < underlagsperioder.size() && underlagsperioder.get(neste).fraOgMed().getYear() == aar) {
+                neste++;
+            }
+            int tilOgMed = neste;
+            while (fraOgMed < tilOgMed && !dekt[fraOgMed]) {
+                fraOgMed++;
+            }
+            while (tilOgMed > fraOgMed && !dekt[tilOgMed - 1]) {
+                tilOgMed--;
+            }
+            perAar.put(
+                    new Aarstall(aar),
+                    new Underlag(slaaSamanVedBehov(new ArrayList<>(underlagsperioder.subList(fraOgMed, tilOgMed))))
+            );
+        }
+        return perAar;
+    }
+
+    /**
+     * Periodiserer underlagsperioder ut frå input-periodene i <code>sortertePerioder</code> og returnerer dei etter
+     * kvart som dei blir bygd, i staden for å samle dei i eit {@link Underlag}.
+     * <p>
+     * Underlagsperiodene blir splitta, avgrensa til observasjonsperioda og kobla, inkludert
+     * {@link #filtrerKoblinger(Predicate) filtreringa av koblingar}, på akkurat same vis som ved
+     * {@link #periodiser()}. Sidan input-periodene må vere sortert kronologisk på frå og med-dato, blir kun
+     * input-periodene som overlappar underlagsperioda som blir bygd, halde på i minnet. Dette gjer det mogleg å
+     * periodisere input-straumar som er for store til å haldast i minnet samtidig.
+     * <p>
+     * Input-perioder lagt til via {@link #addPerioder(Stream)} blir ikkje tatt med i straumperiodiseringa.
+     * <p>
+     * Straumen er lat, <code>sortertePerioder</code> blir først lest frå når underlagsperiodene blir henta ut, og
+     * blir lukka når den returnerte straumen blir lukka.
+     *
+     * @param sortertePerioder input-periodene, sortert kronologisk på frå og med-dato
+     * @return ein sekvensiell straum av kobla underlagsperioder i kronologisk rekkefølge
+     * @throws NullPointerException     dersom <code>sortertePerioder</code> er <code>null</code>
+     * @throws IllegalArgumentException frå straumen, dersom input-periodene ikkje er sortert på frå og med-dato
+     * @see Straumperiodisering
+     */
+    public Stream<Underlagsperiode> periodiserSomStraum(final Stream<? extends Tidsperiode<?>> sortertePerioder) {
+        requireNonNull(sortertePerioder, "sorterte perioder er påkrevd, men var null");
+        return StreamSupport
+                .stream(
+                        () -> Spliterators.spliteratorUnknownSize(
+                                new Straumperiodisering(sortertePerioder.iterator(), grenser, koblingsfilter),
+                                Spliterator.ORDERED | Spliterator.NONNULL
+                        ),
+                        Spliterator.ORDERED | Spliterator.NONNULL,
+                        false
                 )
+                .onClose(sortertePerioder::close);
+    }
+
+    /**
+     * Oppdaterer eit tidligare periodisert underlag med input-perioder som har blitt lagt til eller fjerna etter at
+     * underlaget vart periodisert.
+     *
+     * @param forrige  underlaget som sist vart periodisert av denne factoryen
+     * @param lagtTil  input-perioder som skal leggast til
+     * @param fjerna   input-perioder som skal fjernast
+     * @return eit nytt underlag, periodisert ut frå factoryens oppdaterte input-perioder
+     * @see #reperiodiser(Underlag, Iterable, Iterable, Consumer)
+     */
+    public Underlag reperiodiser(
+            final Underlag forrige,
+            final Iterable<? extends Tidsperiode<?>> lagtTil,
+            final Iterable<? extends Tidsperiode<?>> fjerna
+    ) {
+        return reperiodiser(forrige, lagtTil, fjerna, periode -> {
+        });
+    }
+
+    /**
+     * Oppdaterer eit tidligare periodisert underlag med input-perioder som har blitt lagt til eller fjerna etter at
+     * underlaget vart periodisert.
+     * <p>
+     * Input-periodene til factoryen blir oppdatert med endringane, deretter blir kun underlagsperiodene som ligg
+     * innanfor tidsrommet som endringane påverkar, splitta og kobla på nytt. Tidsrommet strekker seg frå
+     * underlagsperioda som inneheld dagen før ei endra periode startar, til og med underlagsperioda som inneheld
+     * dagen etter at den endra perioda sluttar, slik at underlagsperioder som må slåast saman eller splittast
+     * på grunn av endringa også blir tatt med.
+     * <p>
+     * Underlagsperioder utanfor dei påverka tidsromma blir gjenbrukt som dei er, inkludert annotasjonane deira og
+     * tidligare beregna verdiar. Dei nye underlagsperiodene blir ikkje annotert, <code>annotering</code> blir
+     * derfor kalla for kvar av dei slik at klienten kan annotere dei på same vis som ved ordinær periodisering.
+     * Det nye underlaget blir annotert med annotasjonane til <code>forrige</code>.
+     * <p>
+     * Resultatet er likt det ein ville fått ved å legge til og fjerne periodene før ei ny {@link #periodiser()
+     * periodisering}, men arbeidet med å splitte, koble og annotere underlagsperiodene er avgrensa til dei påverka
+     * tidsromma. Dersom {@link #slaaSamanLikeUnderlagsperioder() samanslåing} er slått på, blir dei nye
+     * underlagsperiodene slått saman med kvarandre og med underlagsperioda rett før og rett etter kvart tidsrom.
+     * Ei samanslått underlagsperiode får annotasjonane til første underlagsperiode den er slått saman frå, sjå
+     * {@link Underlagsperiode#slaaSamanMed(Underlagsperiode)}.
+     * <p>
+     * Merk at det kun er splittinga, koblinga og annoteringa som er inkrementell. Oppdateringa av input-periodene,
+     * der kvar fjerna periode blir leita opp via {@link Object#equals(Object)}, gjennomgangen av input-periodene for
+     * å finne periodene som overlappar tidsromma, og oppbygginga av det nye underlaget er framleis proporsjonal med
+     * antall input-perioder og underlagsperioder. Desse stega er billige samanlikningar og kopieringar pr periode.
+     * Input-periodene blir ikkje sortert på nytt dersom det ikkje er lagt til input-perioder via
+     * {@link #addPerioder(Stream)} sidan førre periodisering.
+     * <p>
+     * Metoda føreset at <code>forrige</code> er resultatet av siste periodisering på denne factoryen og at det
+     * ikkje har blitt lagt til input-perioder sidan, ellers vil det nye underlaget vere inkonsistent.
+     * Fjerna perioder blir identifisert via {@link Object#equals(Object)}, perioder som ikkje inngår i factoryens
+     * input-perioder blir ignorert.
+     *
+     * @param forrige    underlaget som sist vart periodisert av denne factoryen
+     * @param lagtTil    input-perioder som skal leggast til
+     * @param fjerna     input-perioder som skal fjernast
+     * @param annotering blir kalla for kvar ny underlagsperiode, etter at den er kobla til overlappande tidsperioder
+     * @return eit nytt underlag, periodisert ut frå factoryens oppdaterte input-perioder
+     * @throws NullPointerException dersom nokon av argumenta er <code>null</code>
+     */
+    public Underlag reperiodiser(
+            final Underlag forrige,
+            final Iterable<? extends Tidsperiode<?>> lagtTil,
+            final Iterable<? extends Tidsperiode<?>> fjerna,
+            final Consumer<? super Underlagsperiode> annotering
+    ) {
+        requireNonNull(forrige, "forrige underlag er påkrevd, men var null");
+        requireNonNull(annotering, "annotering er påkrevd, men var null");
+
+        sorterInputperioder();
+        final ArrayList<Tidsperiode<?>> endringar = new ArrayList<>();
+        for (final Tidsperiode<?> periode : requireNonNull(fjerna, "fjerna perioder er påkrevd, men var null")) {
+            if (perioder.remove(periode)) {
+                endringar.add(periode);
+            }
+        }
+        for (final Tidsperiode<?> periode : requireNonNull(lagtTil, "nye perioder er påkrevd, men var null")) {
+            if (grenser.overlapper(periode)) {
+                leggTilSortert(periode);
+                endringar.add(periode);
+            }
+        }
+
+        final List<Underlagsperiode> gamle = forrige.toList();
+        if (gamle.isEmpty()) {
+            final Underlag nytt = periodiser();
+            nytt.forEach(annotering);
+            return nytt.annoterFra(forrige);
+        }
+
+        final ArrayList<Underlagsperiode> nye = new ArrayList<>(gamle.size() + 2 * endringar.size());
+        int neste = 0;
+        for (final int[] tidsrom : paaverkaTidsrom(forrige, endringar)) {
+            nye.addAll(gamle.subList(neste, tidsrom[0]));
+            for (final Underlagsperiode periode : reperiodiser(gamle, tidsrom[0], tidsrom[1])) {
+                annotering.accept(periode);
+                leggTilSamanslaattVedBehov(nye, periode);
+            }
+            neste = tidsrom[1] + 1;
+            if (neste < gamle.size()) {
+                leggTilSamanslaattVedBehov(nye, gamle.get(neste++));
+            }
+        }
+        nye.addAll(gamle.subList(neste, gamle.size()));
+        return new Underlag(nye.stream()).annoterFra(forrige);
+    }
+
+    /**
+     * Periodiserer og koblar på nytt underlagsperiodene frå og med <code>foerste</code> til og med
+     * <code>siste</code>.
+     * <p>
+     * Frå og med-datoen til første og dagen etter til og med-datoen til siste underlagsperiode blir behalde som
+     * splittdatoar, sidan dei skyldast input-perioder som ikkje er påverka av endringane. Unntaket er dersom
+     * tidsrommet startar med første eller sluttar med siste underlagsperiode i underlaget, då blir observasjonsperioda
+     * brukt som grense slik at endringar før eller etter underlaget blir periodisert på same vis som ved ordinær
+     * periodisering.
+     *
+     * @param gamle    underlagsperiodene til underlaget som blir oppdatert
+     * @param foerste  index til første underlagsperiode som skal periodiserast på nytt
+     * @param siste    index til siste underlagsperiode som skal periodiserast på nytt
+     * @return dei nye underlagsperiodene som erstattar underlagsperiodene i tidsrommet
+     */
+    private ArrayList<Underlagsperiode> reperiodiser(final List<Underlagsperiode> gamle, final int foerste, final int siste) {
+        final boolean erStarten = foerste == 0;
+        final boolean erSlutten = siste == gamle.size() - 1;
+        final long nedreGrense = erStarten
+                ? grenser.fraOgMed().toEpochDay()
+                : gamle.get(foerste).fraOgMed().toEpochDay();
+        final long oevreGrense = erSlutten
+                ? oevreGrense()
+                : nesteDag(gamle.get(siste).tilOgMed().orElseThrow());
+
+        final ArrayList<Tidsperiode<?>> overlappande = new ArrayList<>();
+        for (final Tidsperiode<?> periode : perioder) {
+            if (periode.fraOgMed().toEpochDay() >= oevreGrense) {
+                break;
+            }
+            if (periode.tilOgMed().map(UnderlagFactory::nesteDag).orElse(Long.MAX_VALUE) > nedreGrense) {
+                overlappande.add(periode);
+            }
+        }
+
+        final Splittdatoar datoar = splittdatoar.nullstill(2 * overlappande.size() + 2);
+        if (!erStarten) {
+            datoar.leggTil(nedreGrense);
+        }
+        if (!erSlutten) {
+            datoar.leggTil(oevreGrense);
+        }
+        overlappande.forEach(periode -> leggTilSplittdatoar(datoar, periode));
+        datoar.sorterOgAvgrens(nedreGrense, oevreGrense);
+
+        final ArrayList<Underlagsperiode> nye = byggUnderlagsperioder(
+                datoar,
+                erSlutten && grenserErLøpende() && perioderErLøpende()
         );
+        kobleTilOverlappandeTidsperioder(nye, filtrerKoblingar(overlappande));
+        return nye;
+    }
+
+    /**
+     * Finn tidsromma i underlaget som blir påverka av dei endra input-periodene, representert som index til første
+     * og siste påverka underlagsperiode.
+     * <p>
+     * Tidsrom som overlappar eller ligg inntil kvarandre blir slått saman, tidsromma blir returnert i
+     * kronologisk rekkefølge.
+     *
+     * @param underlag  underlaget som blir oppdatert
+     * @param endringar input-periodene som har blitt lagt til eller fjerna
+     * @return index til første og siste underlagsperiode i kvart påverka tidsrom
+     */
+    private List<int[]> paaverkaTidsrom(final Underlag underlag, final List<Tidsperiode<?>> endringar) {
+        final int antall = underlag.toList().size();
+        final ArrayList<int[]> tidsrom = new ArrayList<>(endringar.size());
+        for (final Tidsperiode<?> endring : endringar) {
+            final LocalDate fraOgMed = endring.fraOgMed().equals(MIN) ? MIN : endring.fraOgMed().minusDays(1);
+            final LocalDate tilOgMed = endring
+                    .tilOgMed()
+                    .filter(dato -> dato.isBefore(LocalDate.MAX))
+                    .map(dato -> dato.plusDays(1))
+                    .orElse(LocalDate.MAX);
+            final int foerste = Math.min(underlag.foersteIndexFraOgMed(fraOgMed), antall - 1);
+            final int siste = Math.max(underlag.sisteIndexTilOgMed(tilOgMed), 0);
+            tidsrom.add(new int[]{Math.min(foerste, siste), Math.max(foerste, siste)});
+        }
+        tidsrom.sort(comparingInt(t -> t[0]));
+
+        final ArrayList<int[]> samanslaatt = new ArrayList<>(tidsrom.size());
+        for (final int[] t : tidsrom) {
+            final int[] forrige = samanslaatt.isEmpty() ? null : samanslaatt.get(samanslaatt.size() - 1);
+            if (forrige != null && t[0] <= forrige[1] + 1) {
+                forrige[1] = Math.max(forrige[1], t[1]);
+            } else {
+                samanslaatt.add(t);
+            }
+        }
+        return samanslaatt;
+    }
+
+    /**
+     * Legger til input-perioda sist i input-periodene og registrerer om dei framleis er sortert kronologisk etter
+     * frå og med-dato.
+     */
+    private void leggTil(final Tidsperiode<?> periode) {
+        if (sortert && !perioder.isEmpty() && periode.fraOgMed().isBefore(perioder.get(perioder.size() - 1).fraOgMed())) {
+            sortert = false;
+        }
+        perioder.add(periode);
+    }
+
+    /**
+     * Sorterer input-periodene kronologisk etter frå og med-dato, med mindre dei allereie er sortert.
+     * <p>
+     * Sorteringa er stabil, rekkefølga til input-perioder med samme frå og med-dato blir derfor den samme
+     * uavhengig av om sorteringa blir hoppa over eller ikkje.
+     */
+    private void sorterInputperioder() {
+        if (!sortert) {
+            perioder.sort(comparing(Tidsperiode::fraOgMed));
+            sortert = true;
+        }
+    }
+
+    /**
+     * Legger til input-perioda etter alle input-perioder med same eller tidligare frå og med-dato, slik at
+     * input-periodene framleis er sortert på samme vis som etter ei periodisering.
+     */
+    private void leggTilSortert(final Tidsperiode<?> periode) {
+        int lav = 0;
+        int hoeg = perioder.size();
+        while (lav < hoeg) {
+            final int midt = (lav + hoeg) >>> 1;
+            if (perioder.get(midt).fraOgMed().isAfter(periode.fraOgMed())) {
+                hoeg = midt;
+            } else {
+                lav = midt + 1;
+            }
+        }
+        perioder.add(lav, periode);
     }
 
     /**
      * Koblar gjennom kvar av underlagsperiodene i underlaget og koblar dei saman med alle tidsperioder
      * lagt til via ei av {@link #addPerioder(java.util.stream.Stream)}-metodene, som overlappar underlagsperioda.
+     * <p>
+     * Koblinga blir utført som ein sveip over underlagsperiodene i kronologisk rekkefølge, kvar tidsperiode blir
+     * dermed kun behandla så lenge den overlappar underlagsperioda som blir kobla.
+     * <p>
+     * Både lista med filtrerte koblingar og sveipelinja blir gjenbrukt mellom periodiseringane.
      *
-     * @param underlag underlaget som inneheld underlagsperiodene som skal koblast til tidsperiodene som vart
-     *                 brukt ved periodiseringa av underlaget
-     * @return <code>underlag</code>
-     */
-    private Underlag kobleTilOverlappandeTidsperioder(final Underlag underlag) {
-        final ArrayList<Tidsperiode<?>> koblingar = filtrerKoblingar();
-        for (final Underlagsperiode underlagsperiode : underlag.toList()) {
-            for (final Tidsperiode<?> periode : koblingar) {
-                if (periode.tilOgMed().orElse(MAX).isBefore(underlagsperiode.fraOgMed())) {
-                    continue;
-                }
-                if (periode.fraOgMed().isAfter(underlagsperiode.tilOgMed().orElse(MAX))) {
-                    break;
-                }
-                underlagsperiode.kobleTil(periode);
+     * @param underlagsperioder underlagsperiodene som skal koblast til tidsperiodene som vart brukt ved
+     *                          periodiseringa av dei
+     * @see AktiveTidsperioder
+     */
+    private void kobleTilOverlappandeTidsperioder(final List<Underlagsperiode> underlagsperioder) {
+        if (koblingarPrType != null) {
+            kobleTilOverlappandeTidsperioder(underlagsperioder, perioder);
+            return;
+        }
+        koblingar.clear();
+        for (final Tidsperiode<?> periode : perioder) {
+            if (koblingsfilter.test(periode)) {
+                koblingar.add(periode);
+            }
+        }
+        kobleTilOverlappandeTidsperioder(underlagsperioder, koblingar);
+        koblingar.clear();
+    }
+
+    private void kobleTilOverlappandeTidsperioder(
+            final List<Underlagsperiode> underlagsperioder,
+            final List<Tidsperiode<?>> koblingar
+    ) {
+        if (koblingarPrType != null) {
+            kobleTilOverlappandeTidsperioderPrType(underlagsperioder, koblingar);
+            return;
+        }
+        aktive.nullstill(koblingar);
+        for (final Underlagsperiode underlagsperiode : underlagsperioder) {
+            aktive.kobleTil(underlagsperiode);
+        }
+        aktive.nullstill(List.of());
+    }
+
+    /**
+     * Grupperer tidsperiodene pr type og koblar underlagsperiodene til dei overlappande tidsperiodene av kvar
+     * type, med ein sveip pr type.
+     * <p>
+     * Tidsperioder av typar som ikkje er {@link #filtrerKoblingarAvType(Class[]) valt ut} blir ignorert.
+     *
+     * @param underlagsperioder underlagsperiodene som skal koblast
+     * @param koblingar         tidsperiodene som underlagsperiodene skal koblast til, sortert på frå og med-dato
+     */
+    private void kobleTilOverlappandeTidsperioderPrType(
+            final List<Underlagsperiode> underlagsperioder,
+            final List<Tidsperiode<?>> koblingar
+    ) {
+        for (final Tidsperiode<?> kobling : koblingar) {
+            final ArrayList<Tidsperiode<?>> avType = koblingarPrType.get(kobling.getClass());
+            if (avType != null) {
+                avType.add(kobling);
             }
         }
-        return underlag;
+        koblingarPrType.forEach((type, avType) -> {
+            if (!avType.isEmpty()) {
+                aktive.nullstill(avType);
+                for (final Underlagsperiode underlagsperiode : underlagsperioder) {
+                    aktive.kobleTil(underlagsperiode, type);
+                }
+                avType.clear();
+            }
+        });
+        aktive.nullstill(List.of());
     }
 
-    private ArrayList<Tidsperiode<?>> filtrerKoblingar() {
-        return this
-                .perioder
+    private ArrayList<Tidsperiode<?>> filtrerKoblingar(final List<Tidsperiode<?>> input) {
+        return input
                 .stream()
                 .filter(koblingsfilter)
                 .collect(toCollection(ArrayList::new));
     }
 
     /**
-     * Bygger opp ein kronologisk sortert straum av underlagsperioder for endringsdatoane.
+     * Bygger opp ei kronologisk sortert liste av underlagsperioder for endringsdatoane.
      * <p>
      * For kvar dato i <code>endringsdatoer</code> blir det generert ei ny underlagsperiode som har den aktuelle
      * datoen som sin frå og med-dato og neste endringsdato, minus 1 dag, som sin til og med-dato.
      * <p>
      * Siste endringsdato må derfor vere dagen etter at siste underlagsperiode skal bli avslutta for å sikre at
-     * periodiseringa blir som forventa.
+     * periodiseringa blir som forventa. Sidan siste endringsdato kun blir brukt for å utlede til og med-datoen til
+     * siste underlagsperiode, blir det aldri oppretta nokon {@link LocalDate} for den med mindre underlaget skal
+     * avsluttast med ei løpande underlagsperiode.
+     *
+     * @param endringsdatoer       kronologisk sorterte og unike epoch-dagar der det skal starte ei ny underlagsperiode
+     * @param avsluttMedLøpande    <code>true</code> dersom det skal leggast til ei løpande underlagsperiode som startar
+     *                             på siste endringsdato
+     * @return ei kronologisk sortert liste av underlagsperioder
+     */
+    private ArrayList<Underlagsperiode> byggUnderlagsperioder(final Splittdatoar endringsdatoer, final boolean avsluttMedLøpande) {
+        final int antall = endringsdatoer.antall();
+        final ArrayList<Underlagsperiode> nyePerioder = new ArrayList<>(antall);
+        if (antall == 0) {
+            return nyePerioder;
+        }
+        LocalDate fraOgMed = antall > 1 ? endringsdatoer.dato(0) : null;
+        for (int i = 1; i < antall; i++) {
+            final LocalDate tilOgMed = LocalDate.ofEpochDay(endringsdatoer.dag(i) - 1);
+            nyePerioder.add(new Underlagsperiode(fraOgMed, tilOgMed));
+            if (i + 1 < antall) {
+                fraOgMed = tilOgMed.plusDays(1);
+            }
+        }
+        if (avsluttMedLøpande) {
+            nyePerioder.add(new Underlagsperiode(endringsdatoer.dato(antall - 1), empty()));
+        }
+        return nyePerioder;
+    }
+
+    /**
+     * Legger til underlagsperioda sist i <code>perioder</code>, eventuelt slått saman med den siste
+     * underlagsperioda i <code>perioder</code> dersom samanslåing er slått på og dei har like koblingar.
+     *
+     * @param perioder kronologisk sorterte underlagsperioder utan tidsgap
+     * @param periode  underlagsperioda som startar dagen etter at den siste underlagsperioda i <code>perioder</code>
+     *                 sluttar
+     * @see #slaaSamanVedBehov(ArrayList)
+     */
+    private void leggTilSamanslaattVedBehov(final ArrayList<Underlagsperiode> perioder, final Underlagsperiode periode) {
+        final int siste = perioder.size() - 1;
+        if (slaaSaman && siste >= 0 && perioder.get(siste).harLikeKoblingar(periode)) {
+            perioder.set(siste, perioder.get(siste).slaaSamanMed(periode));
+        } else {
+            perioder.add(periode);
+        }
+    }
+
+    private ArrayList<Underlagsperiode> slaaSamanVedBehov(final ArrayList<Underlagsperiode> underlagsperioder) {
+        if (!slaaSaman) {
+            return underlagsperioder;
+        }
+        return Samanslaaing.slaaSaman(underlagsperioder, Underlagsperiode::harLikeKoblingar);
+    }
+
+    /**
+     * Bygger opp ei kronologisk sortert liste av underlagsperioder for endringsdatoane, der underlagsperioder som
+     * strekker seg over eit årsskifte blir splitta på årsskiftet.
+     * <p>
+     * Sidan metoda kun blir brukt når observasjonsperioda har ein til og med-dato, blir underlaget aldri
+     * avslutta med ei løpande underlagsperiode.
      *
-     * @param endringsdatoer ei kronologisk sortert samling datoar der det skal starte ei ny underlagsperiode
-     * @return ein kronologisk sortert straum av underlagsperioder
-     */
-    private Stream<Underlagsperiode> byggUnderlagsperioder(final SortedSet<LocalDate> endringsdatoer) {
-        final ArrayList<Underlagsperiode> nyePerioder = new ArrayList<>();
-        LocalDate fraOgMed = null;
-        for (final LocalDate nextDate : endringsdatoer) {
-            if (fraOgMed != null) {
-                nyePerioder.add(new Underlagsperiode(fraOgMed, nextDate.minusDays(1)));
+     * @param endringsdatoer kronologisk sorterte og unike epoch-dagar der det skal starte ei ny underlagsperiode
+     * @return ei kronologisk sortert liste av underlagsperioder som kvar ligg innanfor eitt og samme år
+     * @see #byggUnderlagsperioder(Splittdatoar, boolean)
+     */
+    private ArrayList<Underlagsperiode> byggUnderlagsperioderPerAar(final Splittdatoar endringsdatoer) {
+        final int antall = endringsdatoer.antall();
+        final ArrayList<Underlagsperiode> nyePerioder = new ArrayList<>(antall);
+        for (int i = 1; i < antall; i++) {
+            LocalDate fraOgMed = endringsdatoer.dato(i - 1);
+            final LocalDate tilOgMed = LocalDate.ofEpochDay(endringsdatoer.dag(i) - 1);
+            while (fraOgMed.getYear() < tilOgMed.getYear()) {
+                final LocalDate nyttAar = fraOgMed.withDayOfYear(1).plusYears(1);
+                nyePerioder.add(new Underlagsperiode(fraOgMed, nyttAar.minusDays(1)));
+                fraOgMed = nyttAar;
             }
-            fraOgMed = nextDate;
+            nyePerioder.add(new Underlagsperiode(fraOgMed, tilOgMed));
         }
-        if (fraOgMed != null && grenserErLøpende() && perioderErLøpende()) {
-            nyePerioder.add(new Underlagsperiode(fraOgMed, empty()));
+        return nyePerioder;
+    }
+
+    /**
+     * Markerer kva underlagsperioder som blir overlappa av minst ei input-periode, uavhengig av om input-perioda
+     * blir kobla til underlagsperioda eller ikkje.
+     * <p>
+     * Sidan input-periodene sine frå og med-datoar alltid er splittdatoar, vil ei underlagsperiode anten vere heilt
+     * dekt eller ikkje dekt i det heile av input-periodene. Det er dermed tilstrekkelig å sjekke om nokon av
+     * input-periodene som startar før eller samtidig med underlagsperioda, framleis er aktive når den startar.
+     *
+     * @param underlagsperioder kronologisk sorterte underlagsperioder
+     * @return <code>true</code> for kvar underlagsperiode som blir overlappa av minst ei input-periode
+     */
+    private boolean[] dektAvInputperioder(final List<Underlagsperiode> underlagsperioder) {
+        final boolean[] dekt = new boolean[underlagsperioder.size()];
+        long sisteSlutt = Long.MIN_VALUE;
+        int neste = 0;
+        for (int i = 0; i < dekt.length; i++) {
+            final LocalDate fraOgMed = underlagsperioder.get(i).fraOgMed();
+            while (neste < perioder.size() && !perioder.get(neste).fraOgMed().isAfter(fraOgMed)) {
+                sisteSlutt = Math.max(
+                        sisteSlutt,
+                        perioder.get(neste).tilOgMed().map(UnderlagFactory::nesteDag).orElse(Long.MAX_VALUE)
+                );
+                neste++;
+            }
+            dekt[i] = sisteSlutt > fraOgMed.toEpochDay();
         }
-        return nyePerioder.stream();
+        return dekt;
     }
 
     private boolean grenserErLøpende() {
@@ -228,72 +893,116 @@ public class UnderlagFactory {
      * <h4>Rekkefølge</h4>
      * <p>
      * Sidan behandlinga av tidsperiodene i <code>input</code> ikkje vil garantere at vi endar opp med ei frå og med-
-     * og til og med-datoar i kronologisk sortert rekkefølge blir derfor lista vi returnerer sortert kronologisk (dvs
+     * og til og med-datoar i kronologisk sortert rekkefølge blir derfor datoane vi returnerer sortert kronologisk (dvs
      * frå minste dato til største dato) før vi returnerer. Uten dette vil ein ikkje kunne konstruere eit
      * underlag sidan ein ikkje lenger har ein garanti for at ei underlagsperiodes frå og med-dato alltid vil vere
      * mindre enn til og med-datoen for samme periode.
+     * <p>
+     * <h4>Representasjon</h4>
+     * <p>
+     * Datoane blir handtert som epoch-dagar i ein primitiv tabell som blir sortert, avgrensa og gjort unike på plass,
+     * for å unngå at det blir oppretta fleire objekt pr dato ved periodisering av underlag med mange input-perioder.
+     * Tabellen blir gjenbrukt mellom periodiseringane.
      *
      * @param input ei liste som inneheld alle tidsperioder som underlagets potensielt sett skal måtte periodiserast frå
-     * @return ei kronologisk sortert samling av unike datoar som underlaget sine underlagsperioder skal splittast på
+     * @return kronologisk sorterte, unike epoch-dagar som underlaget sine underlagsperioder skal splittast på
+     * @see Splittdatoar
      */
-    private SortedSet<LocalDate> alleDatoerUnderlagesPerioderSkalSplittesPaa(final List<Tidsperiode<?>> input) {
-        return input.stream()
-                .flatMap(p -> Stream.concat(
-                        Stream.of(p.fraOgMed()),
-                        p.tilOgMed().or(grenser::tilOgMed)
-                                .map(UnderlagFactory::nesteDag).stream()
-                ))
-                .map(this::avgrensTilNedreGrense)
-                .map(this::avgrensTilOevreGrense)
-                .collect(TreeSet::new, TreeSet::add, TreeSet::addAll);
+    private Splittdatoar alleDatoerUnderlagesPerioderSkalSplittesPaa(final List<Tidsperiode<?>> input) {
+        final Splittdatoar datoar = splittdatoar.nullstill(input.size() * 2);
+        for (final Tidsperiode<?> periode : input) {
+            leggTilSplittdatoar(datoar, periode);
+        }
+        datoar.sorterOgAvgrens(grenser.fraOgMed().toEpochDay(), oevreGrense());
+        return datoar;
     }
 
     /**
-     * Avgrensar <code>dato</code> til å ligge innanfor observasjonsperioda til og med-dato.
+     * Legger til frå og med-datoen og dagen etter til og med-datoen til <code>periode</code> som splittdatoar.
+     * <p>
+     * For løpande perioder blir dagen etter observasjonsperiodas til og med-dato brukt, med mindre også
+     * observasjonsperioda er løpande.
+     *
+     * @param datoar  splittdatoane som datoane skal leggast til i
+     * @param periode input-perioda som underlaget skal splittast på
+     */
+    private void leggTilSplittdatoar(final Splittdatoar datoar, final Tidsperiode<?> periode) {
+        datoar.leggTil(periode.fraOgMed().toEpochDay());
+        if (periode.tilOgMed().isPresent()) {
+            datoar.leggTil(nesteDag(periode.tilOgMed().get()));
+        } else if (!grenserErLøpende()) {
+            datoar.leggTil(oevreGrense());
+        }
+    }
+
+    /**
+     * Returnerer epoch-dagen etter observasjonsperiodas til og med-dato.
      * <p>
      * Intensjonen her er å sikre at underlaget ikkje blir periodisert på ein slik måte at ei eller fleire av
      * underlagsperiodene blir liggande utanfor observasjonsperioda, sidan den representerer ei hard,
      * ytre begrensing for første fra og med- og siste til og med-dato til underlagperiodene til underlaget.
-     * <p>
-     * Dersom <code>dato</code> ligg utanfor observasjonsperioda blir den sett bort frå og dagen etter
-     * observasjonsperiodas siste dag, blir returnert.
      *
-     * @param dato ein dato som muligens ligg etter observasjonsperiodas til og med-dato
-     * @return returnerer <code>dato</code> viss <code>dato</code> overlappar observasjonsperioda,
-     * ellers blir dagen etter observasjonsperiodas til og med-dato returnert
+     * @return dagen etter observasjonsperiodas til og med-dato, eller {@link Long#MAX_VALUE} dersom
+     * observasjonsperioda er løpande
      */
-    private LocalDate avgrensTilOevreGrense(final LocalDate dato) {
+    private long oevreGrense() {
         return grenser
                 .tilOgMed()
-                .filter(dato::isAfter)
                 .map(UnderlagFactory::nesteDag)
-                .orElse(dato);
+                .orElse(Long.MAX_VALUE);
     }
 
     /**
-     * Avgrensar <code>dato</code> til å ligge innanfor observasjonsperioda.
-     * <p>
-     * Intensjonen her er å sikre at underlaget ikkje blir periodisert på ein slik måte at ei eller fleire av
-     * underlagsperiodene har ein frå og med-dato som ligg utanfor observasjonsperioda, sidan den representerer ei hard,
-     * ytre begrensing for første fra og med- og siste til og med-dato til underlagperiodene til underlaget.
+     * Returnerer epoch-dagen etter <code>dato</code>.
      *
-     * @param dato ein dato som muligens ligg utanfor observasjonsperioda
-     * @return returnerer <code>dato</code> viss <code>dato</code> overlappar observasjonsperioda,
-     * ellers blir observasjonsperiodas fra og med-dato returnert
+     * @param dato datoen som er ein dag før datoen som blir returnert
+     * @return epoch-dagen etter <code>dato</code>
+     * @see java.time.LocalDate#toEpochDay()
      */
-
-    private LocalDate avgrensTilNedreGrense(final LocalDate dato) {
-        return dato.isBefore(grenser.fraOgMed()) ? grenser.fraOgMed() : dato;
+    private static long nesteDag(final LocalDate dato) {
+        return dato.toEpochDay() + 1;
     }
 
     /**
-     * Returnerer dagen etter <code>dato</code>.
-     *
-     * @param dato datoen som er ein dag før datoen som blir returnert
-     * @return dagen etter <code>dato</code>
-     * @see java.time.LocalDate#plusDays(long)
+     * Ein av straumane som blir fletta saman av {@link #addSortertePerioder(Stream[])}, med neste periode frå
+     * straumen som flettinga skal behandle.
+     * <p>
+     * Straumar med lik frå og med-dato blir ordna etter posisjonen deira i argumentlista, slik at flettinga blir
+     * stabil.
      */
-    private static LocalDate nesteDag(final LocalDate dato) {
-        return dato.plusDays(1);
+    private static class SortertStraum implements Comparable<SortertStraum> {
+        private final int posisjon;
+
+        private final Iterator<? extends Tidsperiode<?>> perioder;
+
+        private Tidsperiode<?> gjeldande;
+
+        SortertStraum(final int posisjon, final Iterator<? extends Tidsperiode<?>> perioder) {
+            this.posisjon = posisjon;
+            this.perioder = perioder;
+        }
+
+        boolean neste() {
+            if (!perioder.hasNext()) {
+                return false;
+            }
+            final Tidsperiode<?> forrige = gjeldande;
+            gjeldande = perioder.next();
+            if (forrige != null && gjeldande.fraOgMed().isBefore(forrige.fraOgMed())) {
+                throw new IllegalArgumentException(
+                        "Input-periodene må vere sortert kronologisk på frå og med-dato, men "
+                                + gjeldande
+                                + " startar før "
+                                + forrige.fraOgMed()
+                );
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(final SortertStraum annan) {
+            final int fraOgMed = gjeldande.fraOgMed().compareTo(annan.gjeldande.fraOgMed());
+            return fraOgMed != 0 ? fraOgMed : Integer.compare(posisjon, annan.posisjon);
+        }
     }
 }
@@ -0,0 +1,128 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
+
+/**
+ * {@link Underlagsdiff} representerer algoritma som finn tidsromma der to underlag er ulike.
+ * <p>
+ * Begge underlaga blir gått gjennom parallelt i kronologisk rekkefølge, i eitt lineært pass. For kvart tidsrom
+ * der ingen av underlaga skiftar underlagsperiode, blir underlagsperiodene som dekker tidsrommet samanlikna.
+ * Tidsrommet er endra dersom berre eitt av underlaga dekker det, dersom underlagsperiodene har ulike frå og med-
+ * eller til og med-datoar, eller dersom dei har ulike koblingar eller annotasjonar. Koblingar og annotasjonar
+ * blir samanlikna via {@link Object#equals(Object)}.
+ * <p>
+ * Tilstøytande endra tidsrom blir slått saman til eitt tidsrom.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Underlagsdiff {
+    private static final long LOEPANDE = Long.MAX_VALUE;
+
+    private final ArrayList<GenerellTidsperiode> endringar = new ArrayList<>();
+
+    private long endraFraOgMed;
+
+    private long endraTilOgMed = Long.MIN_VALUE;
+
+    private Underlagsdiff() {
+    }
+
+    /**
+     * Finn tidsromma der <code>nye</code> er ulik <code>gamle</code>.
+     *
+     * @param gamle underlagsperiodene i det gamle underlaget, i kronologisk rekkefølge
+     * @param nye   underlagsperiodene i det nye underlaget, i kronologisk rekkefølge
+     * @return dei endra tidsromma, i kronologisk rekkefølge
+     */
+    static List<GenerellTidsperiode> endringar(final List<Underlagsperiode> gamle, final List<Underlagsperiode> nye) {
+        final Underlagsdiff diff = new Underlagsdiff();
+        int i = 0;
+        int j = 0;
+        long dag = Math.min(fraOgMed(gamle, 0), fraOgMed(nye, 0));
+        while (i < gamle.size() || j < nye.size()) {
+            final Underlagsperiode gammal = i < gamle.size() && fraOgMed(gamle, i) <= dag ? gamle.get(i) : null;
+            final Underlagsperiode ny = j < nye.size() && fraOgMed(nye, j) <= dag ? nye.get(j) : null;
+
+            final long slutt = Math.min(slutt(gamle, i, gammal), slutt(nye, j, ny));
+            if (gammal != null || ny != null) {
+                if (gammal == null || ny == null || !erLike(gammal, ny)) {
+                    diff.endra(dag, slutt);
+                }
+            }
+            if (gammal != null && tilOgMed(gammal) == slutt) {
+                i++;
+            }
+            if (ny != null && tilOgMed(ny) == slutt) {
+                j++;
+            }
+            if (slutt == LOEPANDE) {
+                break;
+            }
+            dag = slutt + 1;
+        }
+        diff.avslutt();
+        return diff.endringar;
+    }
+
+    private void endra(final long fraOgMed, final long tilOgMed) {
+        if (endraTilOgMed != Long.MIN_VALUE && endraTilOgMed + 1 == fraOgMed) {
+            endraTilOgMed = tilOgMed;
+            return;
+        }
+        avslutt();
+        endraFraOgMed = fraOgMed;
+        endraTilOgMed = tilOgMed;
+    }
+
+    private void avslutt() {
+        if (endraTilOgMed == Long.MIN_VALUE) {
+            return;
+        }
+        endringar.add(
+                new GenerellTidsperiode(
+                        LocalDate.ofEpochDay(endraFraOgMed),
+                        endraTilOgMed == LOEPANDE ? empty() : of(LocalDate.ofEpochDay(endraTilOgMed))
+                )
+        );
+        endraTilOgMed = Long.MIN_VALUE;
+    }
+
+    private static boolean erLike(final Underlagsperiode gammal, final Underlagsperiode ny) {
+        return gammal == ny
+                || gammal.fraOgMed().equals(ny.fraOgMed())
+                && gammal.tilOgMed().equals(ny.tilOgMed())
+                && gammal.harLikeKoblingar(ny)
+                && gammal.harLikeAnnotasjonar(ny);
+    }
+
+    /**
+     * Siste dag i tidsrommet som startar på gjeldande dag, sett frå det eine underlaget.
+     * <p>
+     * Dersom underlaget dekker gjeldande dag er det siste dag i underlagsperioda, ellers dagen før neste
+     * underlagsperiode startar.
+     */
+    private static long slutt(final List<Underlagsperiode> perioder, final int index, final Underlagsperiode gjeldande) {
+        if (gjeldande != null) {
+            return tilOgMed(gjeldande);
+        }
+        if (index < perioder.size()) {
+            return fraOgMed(perioder, index) - 1;
+        }
+        return LOEPANDE;
+    }
+
+    private static long fraOgMed(final List<Underlagsperiode> perioder, final int index) {
+        return index < perioder.size() ? perioder.get(index).fraOgMed().toEpochDay() : LOEPANDE;
+    }
+
+    private static long tilOgMed(final Underlagsperiode periode) {
+        return periode.tilOgMed().map(LocalDate::toEpochDay).orElse(LOEPANDE);
+    }
+}
@@ -0,0 +1,512 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import no.spk.tidsserie.tidsperiode.Aar;
+import no.spk.tidsserie.tidsperiode.Aarstall;
+import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
+import no.spk.tidsserie.tidsperiode.Maaned;
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Underlagskodek} skriv og les {@link Underlag}, {@link Underlagsperiode} og {@link Observasjonsperiode} i
+ * eit kompakt, versjonert binærformat.
+ * <p>
+ * Formatet startar med eit magisk tal, ein formatversjon og kva slags objekt som følgjer. Datoar blir skrive som
+ * epoch-dagar med variabel lengde, for underlagsperioder som differansen frå dagen etter forrige underlagsperiode,
+ * slik at eit gyldig underlag kun brukar ein byte på frå og med-datoen til kvar underlagsperiode. Til og
+ * med-datoane blir skrive som lengda til underlagsperioda.
+ * <p>
+ * Typane til koblingar og annotasjonar blir skrive med fullt klassenamn første gang dei blir brukt i eit objekt,
+ * og deretter som ein referanse til typen. Tilsvarande blir kvar kobling og kvar annotasjonsverdi kun skrive
+ * første gang, seinare bruk av samme instans blir skrive som ein referanse. Tidsperioder som er kobla til
+ * mange underlagsperioder, blir dermed kun skrive éin gong, og blir lest tilbake som éin delt instans.
+ * <p>
+ * Verdiane blir skrive og lest av ein {@link Verdikodek} registrert for typen, det blir ikkje brukt refleksjon.
+ * Kodekar for {@link String}, {@link Integer}, {@link Long}, {@link Double}, {@link Boolean}, {@link LocalDate},
+ * {@link Aarstall}, {@link Aar}, {@link Maaned}, {@link GenerellTidsperiode} og {@link Observasjonsperiode} er
+ * registrert på førehand, alle andre typar må registrerast via {@link #registrer(Class, Verdikodek)} før eit
+ * objekt som brukar dei, kan skrivast eller lesast.
+ * <p>
+ * Beregna verdiar blir ikkje skrive.
+ *
+ * @author Tarjei Skorgenes
+ */
+public final class Underlagskodek {
+    static final int MAGISK_TAL = 0x554E444C;
+
+    static final int VERSJON = 1;
+
+    private static final int UNDERLAG = 1;
+
+    private static final int UNDERLAGSPERIODE = 2;
+
+    private static final int OBSERVASJONSPERIODE = 3;
+
+    private final Map<Class<?>, Verdikodek<?>> kodekar = new HashMap<>();
+
+    private final Map<String, Class<?>> typar = new HashMap<>();
+
+    /**
+     * Konstruerer ein ny kodek med kodekar for standardtypane registrert.
+     */
+    public Underlagskodek() {
+        registrer(String.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final String verdi, final DataOutput ut) throws IOException {
+                Varint.skrivTekst(ut, verdi);
+            }
+
+            @Override
+            public String les(final DataInput inn) throws IOException {
+                return Varint.lesTekst(inn);
+            }
+        });
+        registrer(Integer.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Integer verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi);
+            }
+
+            @Override
+            public Integer les(final DataInput inn) throws IOException {
+                return (int) Varint.lesMedForteikn(inn);
+            }
+        });
+        registrer(Long.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Long verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi);
+            }
+
+            @Override
+            public Long les(final DataInput inn) throws IOException {
+                return Varint.lesMedForteikn(inn);
+            }
+        });
+        registrer(Double.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Double verdi, final DataOutput ut) throws IOException {
+                ut.writeDouble(verdi);
+            }
+
+            @Override
+            public Double les(final DataInput inn) throws IOException {
+                return inn.readDouble();
+            }
+        });
+        registrer(Boolean.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Boolean verdi, final DataOutput ut) throws IOException {
+                ut.writeBoolean(verdi);
+            }
+
+            @Override
+            public Boolean les(final DataInput inn) throws IOException {
+                return inn.readBoolean();
+            }
+        });
+        registrer(LocalDate.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final LocalDate verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi.toEpochDay());
+            }
+
+            @Override
+            public LocalDate les(final DataInput inn) throws IOException {
+                return LocalDate.ofEpochDay(Varint.lesMedForteikn(inn));
+            }
+        });
+        registrer(Aarstall.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Aarstall verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi.toYear().getValue());
+            }
+
+            @Override
+            public Aarstall les(final DataInput inn) throws IOException {
+                return new Aarstall((int) Varint.lesMedForteikn(inn));
+            }
+        });
+        registrer(Aar.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Aar verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi.aarstall().toYear().getValue());
+            }
+
+            @Override
+            public Aar les(final DataInput inn) throws IOException {
+                return new Aar(new Aarstall((int) Varint.lesMedForteikn(inn)));
+            }
+        });
+        registrer(Maaned.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Maaned verdi, final DataOutput ut) throws IOException {
+                Varint.skrivMedForteikn(ut, verdi.fraOgMed().getYear());
+                ut.writeByte(verdi.toMonth().getValue());
+            }
+
+            @Override
+            public Maaned les(final DataInput inn) throws IOException {
+                final Aarstall aarstall = new Aarstall((int) Varint.lesMedForteikn(inn));
+                return new Maaned(aarstall, Month.of(inn.readByte()));
+            }
+        });
+        registrer(GenerellTidsperiode.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final GenerellTidsperiode verdi, final DataOutput ut) throws IOException {
+                skrivTidsperiode(verdi, ut);
+            }
+
+            @Override
+            public GenerellTidsperiode les(final DataInput inn) throws IOException {
+                final LocalDate fraOgMed = LocalDate.ofEpochDay(Varint.lesMedForteikn(inn));
+                return new GenerellTidsperiode(fraOgMed, lesTilOgMed(fraOgMed, inn));
+            }
+        });
+        registrer(Observasjonsperiode.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Observasjonsperiode verdi, final DataOutput ut) throws IOException {
+                skrivTidsperiode(verdi, ut);
+            }
+
+            @Override
+            public Observasjonsperiode les(final DataInput inn) throws IOException {
+                final LocalDate fraOgMed = LocalDate.ofEpochDay(Varint.lesMedForteikn(inn));
+                return new Observasjonsperiode(fraOgMed, lesTilOgMed(fraOgMed, inn));
+            }
+        });
+    }
+
+    /**
+     * Registrerer kodeken som skal brukast for å skrive og lese koblingar og annotasjonar av typen.
+     * <p>
+     * For koblingar er typen den konkrete klassa til tidsperioda, for annotasjonar er det typen annotasjonen er
+     * registrert under. Typen blir identifisert via klassenamnet sitt i binærformatet, kodeken som les eit
+     * objekt må derfor ha registrert ein kompatibel kodek for typar med samme klassenamn som kodeken som skreiv
+     * objektet.
+     *
+     * @param <T>   verditypen
+     * @param type  typen som kodeken skal brukast for
+     * @param kodek kodeken for typen
+     * @return <code>this</code>
+     * @throws NullPointerException dersom <code>type</code> eller <code>kodek</code> er <code>null</code>
+     */
+    public <T> Underlagskodek registrer(final Class<T> type, final Verdikodek<T> kodek) {
+        requireNonNull(type, "type er påkrevd, men var null");
+        requireNonNull(kodek, "kodek er påkrevd, men var null");
+        kodekar.put(type, kodek);
+        typar.put(type.getName(), type);
+        return this;
+    }
+
+    /**
+     * Skriv underlaget, inkludert underlagsperiodene, koblingane deira og annotasjonane til underlaget og
+     * underlagsperiodene.
+     *
+     * @param underlag underlaget som skal skrivast
+     * @param ut       straumen som underlaget skal skrivast til
+     * @throws IOException              dersom skrivinga feilar
+     * @throws IllegalArgumentException dersom det ikkje er registrert nokon kodek for ein av typane til
+     *                                  koblingane eller annotasjonane
+     */
+    public void skriv(final Underlag underlag, final DataOutput ut) throws IOException {
+        requireNonNull(underlag, "underlag er påkrevd, men var null");
+        final Skrivar skrivar = new Skrivar(ut, UNDERLAG);
+        final List<Underlagsperiode> perioder = underlag.toList();
+        Varint.skriv(ut, perioder.size());
+        long forventa = 0;
+        for (final Underlagsperiode periode : perioder) {
+            forventa = skrivar.skriv(periode, forventa);
+        }
+        skrivar.skriv(underlag.annotasjonar());
+    }
+
+    /**
+     * Les eit underlag skrive av {@link #skriv(Underlag, DataOutput)}.
+     *
+     * @param inn straumen som underlaget skal lesast frå
+     * @return underlaget
+     * @throws IOException dersom lesinga feilar, dersom straumen ikkje inneheld eit underlag i eit kjent format,
+     *                     eller dersom det ikkje er registrert nokon kodek for ein av typane i underlaget
+     */
+    public Underlag lesUnderlag(final DataInput inn) throws IOException {
+        final Lesar lesar = new Lesar(inn, UNDERLAG);
+        final int antall = Varint.lesAntall(inn);
+        final ArrayList<Underlagsperiode> perioder = new ArrayList<>(antall);
+        long forventa = 0;
+        for (int i = 0; i < antall; i++) {
+            final Underlagsperiode periode = lesar.lesUnderlagsperiode(forventa);
+            perioder.add(periode);
+            forventa = periode.tilOgMed().map(dato -> dato.toEpochDay() + 1).orElse(0L);
+        }
+        final Underlag underlag = new Underlag(perioder);
+        lesar.lesAnnotasjonar(underlag);
+        return underlag;
+    }
+
+    /**
+     * Skriv underlagsperioda, inkludert koblingane og annotasjonane til underlagsperioda.
+     *
+     * @param periode underlagsperioda som skal skrivast
+     * @param ut      straumen som underlagsperioda skal skrivast til
+     * @throws IOException              dersom skrivinga feilar
+     * @throws IllegalArgumentException dersom det ikkje er registrert nokon kodek for ein av typane til
+     *                                  koblingane eller annotasjonane
+     */
+    public void skriv(final Underlagsperiode periode, final DataOutput ut) throws IOException {
+        requireNonNull(periode, "underlagsperiode er påkrevd, men var null");
+        new Skrivar(ut, UNDERLAGSPERIODE).skriv(periode, 0);
+    }
+
+    /**
+     * Les ei underlagsperiode skrive av {@link #skriv(Underlagsperiode, DataOutput)}.
+     *
+     * @param inn straumen som underlagsperioda skal lesast frå
+     * @return underlagsperioda
+     * @throws IOException dersom lesinga feilar, dersom straumen ikkje inneheld ei underlagsperiode i eit kjent
+     *                     format, eller dersom det ikkje er registrert nokon kodek for ein av typane i
+     *                     underlagsperioda
+     */
+    public Underlagsperiode lesUnderlagsperiode(final DataInput inn) throws IOException {
+        return new Lesar(inn, UNDERLAGSPERIODE).lesUnderlagsperiode(0);
+    }
+
+    /**
+     * Skriv observasjonsperioda.
+     *
+     * @param periode observasjonsperioda som skal skrivast
+     * @param ut      straumen som observasjonsperioda skal skrivast til
+     * @throws IOException dersom skrivinga feilar
+     */
+    public void skriv(final Observasjonsperiode periode, final DataOutput ut) throws IOException {
+        requireNonNull(periode, "observasjonsperiode er påkrevd, men var null");
+        skrivHovud(ut, OBSERVASJONSPERIODE);
+        skrivTidsperiode(periode, ut);
+    }
+
+    /**
+     * Les ei observasjonsperiode skrive av {@link #skriv(Observasjonsperiode, DataOutput)}.
+     *
+     * @param inn straumen som observasjonsperioda skal lesast frå
+     * @return observasjonsperioda
+     * @throws IOException dersom lesinga feilar eller dersom straumen ikkje inneheld ei observasjonsperiode i eit
+     *                     kjent format
+     */
+    public Observasjonsperiode lesObservasjonsperiode(final DataInput inn) throws IOException {
+        lesHovud(inn, OBSERVASJONSPERIODE);
+        final LocalDate fraOgMed = LocalDate.ofEpochDay(Varint.lesMedForteikn(inn));
+        return new Observasjonsperiode(fraOgMed, lesTilOgMed(fraOgMed, inn));
+    }
+
+    private static void skrivHovud(final DataOutput ut, final int objekttype) throws IOException {
+        requireNonNull(ut, "straum er påkrevd, men var null");
+        ut.writeInt(MAGISK_TAL);
+        ut.writeByte(VERSJON);
+        ut.writeByte(objekttype);
+    }
+
+    private static void lesHovud(final DataInput inn, final int objekttype) throws IOException {
+        requireNonNull(inn, "straum er påkrevd, men var null");
+        if (inn.readInt() != MAGISK_TAL) {
+            throw new IOException("Straumen inneheld ikkje eit objekt skrive av Underlagskodek");
+        }
+        final int versjon = inn.readUnsignedByte();
+        if (versjon != VERSJON) {
+            throw new IOException("Ukjent formatversjon " + versjon + ", støtta versjon er " + VERSJON);
+        }
+        final int lest = inn.readUnsignedByte();
+        if (lest != objekttype) {
+            throw new IOException("Forventa objekttype " + objekttype + ", men straumen inneheld objekttype " + lest);
+        }
+    }
+
+    private static void skrivTidsperiode(final Tidsperiode<?> periode, final DataOutput ut) throws IOException {
+        Varint.skrivMedForteikn(ut, periode.fraOgMed().toEpochDay());
+        skrivTilOgMed(periode, ut);
+    }
+
+    /**
+     * Til og med-datoen blir skrive som lengda til perioda i dagar, der 0 indikerer at perioda er løpande.
+     */
+    private static void skrivTilOgMed(final Tidsperiode<?> periode, final DataOutput ut) throws IOException {
+        Varint.skriv(
+                ut,
+                periode.tilOgMed()
+                        .map(tilOgMed -> tilOgMed.toEpochDay() - periode.fraOgMed().toEpochDay() + 1)
+                        .orElse(0L)
+        );
+    }
+
+    private static Optional<LocalDate> lesTilOgMed(final LocalDate fraOgMed, final DataInput inn) throws IOException {
+        final long lengde = Varint.les(inn);
+        return lengde == 0 ? empty() : of(fraOgMed.plusDays(lengde - 1));
+    }
+
+    /**
+     * Tilstanden for skriving av eitt objekt, med typane og verdiane som allereie er skrive.
+     */
+    private class Skrivar {
+        private final DataOutput ut;
+
+        private final Map<Class<?>, Integer> skrivneTypar = new HashMap<>();
+
+        private final Map<Object, Integer> skrivneVerdiar = new IdentityHashMap<>();
+
+        Skrivar(final DataOutput ut, final int objekttype) throws IOException {
+            skrivHovud(ut, objekttype);
+            this.ut = ut;
+        }
+
+        /**
+         * Skriv underlagsperioda med frå og med-datoen som differansen frå <code>forventa</code>.
+         *
+         * @return epoch-dagen etter underlagsperioda, forventa frå og med-dato for neste underlagsperiode
+         */
+        long skriv(final Underlagsperiode periode, final long forventa) throws IOException {
+            final long fraOgMed = periode.fraOgMed().toEpochDay();
+            Varint.skrivMedForteikn(ut, fraOgMed - forventa);
+            skrivTilOgMed(periode, ut);
+
+            final ArrayList<Map.Entry<Class<?>, List<Tidsperiode<?>>>> koblingar = new ArrayList<>();
+            periode.koblingar().forEach((type, avType) -> koblingar.add(Map.entry(type, avType)));
+            Varint.skriv(ut, koblingar.size());
+            for (final Map.Entry<Class<?>, List<Tidsperiode<?>>> avType : koblingar) {
+                skrivType(avType.getKey());
+                Varint.skriv(ut, avType.getValue().size());
+                for (final Tidsperiode<?> kobling : avType.getValue()) {
+                    skrivVerdi(avType.getKey(), kobling);
+                }
+            }
+
+            skriv(periode.annotasjonar());
+            return periode.tilOgMed().map(dato -> dato.toEpochDay() + 1).orElse(0L);
+        }
+
+        void skriv(final Annotasjonar annotasjonar) throws IOException {
+            final ArrayList<Map.Entry<Class<?>, Object>> verdiar = new ArrayList<>();
+            annotasjonar.forEach((type, verdi) -> verdiar.add(Map.entry(type, verdi)));
+            Varint.skriv(ut, verdiar.size());
+            for (final Map.Entry<Class<?>, Object> annotasjon : verdiar) {
+                skrivType(annotasjon.getKey());
+                skrivVerdi(annotasjon.getKey(), annotasjon.getValue());
+            }
+        }
+
+        private void skrivType(final Class<?> type) throws IOException {
+            final Integer referanse = skrivneTypar.get(type);
+            if (referanse != null) {
+                Varint.skriv(ut, referanse + 1);
+                return;
+            }
+            Varint.skriv(ut, 0);
+            Varint.skrivTekst(ut, type.getName());
+            skrivneTypar.put(type, skrivneTypar.size());
+        }
+
+        @SuppressWarnings("unchecked")
+        private void skrivVerdi(final Class<?> type, final Object verdi) throws IOException {
+            final Integer referanse = skrivneVerdiar.get(verdi);
+            if (referanse != null) {
+                Varint.skriv(ut, referanse + 1);
+                return;
+            }
+            final Verdikodek<Object> kodek = (Verdikodek<Object>) kodekar.get(type);
+            if (kodek == null) {
+                throw new IllegalArgumentException(
+                        "Det er ikkje registrert nokon verdikodek for " + type.getName()
+                );
+            }
+            Varint.skriv(ut, 0);
+            kodek.skriv(verdi, ut);
+            skrivneVerdiar.put(verdi, skrivneVerdiar.size());
+        }
+    }
+
+    /**
+     * Tilstanden for lesing av eitt objekt, med typane og verdiane som allereie er lest.
+     */
+    private class Lesar {
+        private final DataInput inn;
+
+        private final List<Class<?>> lesteTypar = new ArrayList<>();
+
+        private final List<Object> lesteVerdiar = new ArrayList<>();
+
+        Lesar(final DataInput inn, final int objekttype) throws IOException {
+            lesHovud(inn, objekttype);
+            this.inn = inn;
+        }
+
+        Underlagsperiode lesUnderlagsperiode(final long forventa) throws IOException {
+            final LocalDate fraOgMed = LocalDate.ofEpochDay(forventa + Varint.lesMedForteikn(inn));
+            final Underlagsperiode periode = new Underlagsperiode(fraOgMed, lesTilOgMed(fraOgMed, inn));
+
+            final int antallTypar = Varint.lesAntall(inn);
+            for (int i = 0; i < antallTypar; i++) {
+                final Class<?> type = lesType();
+                final int antall = Varint.lesAntall(inn);
+                final ArrayList<Tidsperiode<?>> koblingar = new ArrayList<>(antall);
+                for (int j = 0; j < antall; j++) {
+                    koblingar.add((Tidsperiode<?>) lesVerdi(type));
+                }
+                periode.kobleTil(type, koblingar);
+            }
+
+            lesAnnotasjonar(periode);
+            return periode;
+        }
+
+        <T extends Annoterbar<T>> void lesAnnotasjonar(final T annoterbar) throws IOException {
+            final int antall = Varint.lesAntall(inn);
+            for (int i = 0; i < antall; i++) {
+                final Class<?> type = lesType();
+                annoterbar.annoter(type, lesVerdi(type));
+            }
+        }
+
+        private Class<?> lesType() throws IOException {
+            final int referanse = Varint.lesAntall(inn);
+            if (referanse > 0) {
+                if (referanse > lesteTypar.size()) {
+                    throw new IOException("Ugyldig typereferanse " + referanse);
+                }
+                return lesteTypar.get(referanse - 1);
+            }
+            final String namn = Varint.lesTekst(inn);
+            final Class<?> type = typar.get(namn);
+            if (type == null) {
+                throw new IOException("Det er ikkje registrert nokon verdikodek for " + namn);
+            }
+            lesteTypar.add(type);
+            return type;
+        }
+
+        private Object lesVerdi(final Class<?> type) throws IOException {
+            final int referanse = Varint.lesAntall(inn);
+            if (referanse > 0) {
+                if (referanse > lesteVerdiar.size()) {
+                    throw new IOException("Ugyldig verdireferanse " + referanse);
+                }
+                return lesteVerdiar.get(referanse - 1);
+            }
+            final Object verdi = kodekar.get(type).les(inn);
+            lesteVerdiar.add(verdi);
+            return verdi;
+        }
+    }
+}
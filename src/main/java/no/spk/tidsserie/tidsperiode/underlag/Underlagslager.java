@@ -0,0 +1,295 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link Underlagslager} er eit lager for {@link Underlag} på disk der kvart underlag blir lagra under ein
+ * <code>long</code>-nøkkel, typisk ein stillingsforhold-id, og kan hentast igjen etter ein omstart utan å måtte
+ * byggast på nytt via {@link UnderlagFactory}.
+ * <p>
+ * Lageret består av to filer i katalogen det blir opna i:
+ * <ul>
+ * <li><code>underlag.data</code> inneheld underlaga skrive av {@link Underlagskodek}, kvart med lengda føre seg.
+ * Fila blir minnemappa i blokker og veks derfor ei heil blokk om gangen, eit underlag blir aldri skrive over
+ * ei blokkgrense.</li>
+ * <li><code>underlag.indeks</code> inneheld nøkkelen og posisjonen i datafila for kvart underlag, i den
+ * rekkefølga dei blei lagt til. Indeksen blir lest inn i minnet når lageret blir opna, medan datafila kun blir
+ * minnemappa og lest etter kvart som underlaga blir henta.</li>
+ * </ul>
+ * <p>
+ * Lageret kan kun utvidast. Dersom eit underlag blir lagt til med ein nøkkel som allereie er i bruk, er det det
+ * sist lagt til underlaget som blir henta ut seinare, det tidligare underlaget blir liggande att i datafila.
+ * <p>
+ * Underlaga blir lest direkte frå den minnemappa datafila kvar gang dei blir henta, utan å bli kopiert til ein
+ * mellombels tabell først. Kvar henting returnerer ein ny instans som kan endrast utan at det påverkar lageret
+ * eller andre hentingar.
+ * <p>
+ * Lageret er ikkje trådsikkert for skriving. Fleire trådar kan hente underlag samtidig så lenge ingen trådar
+ * legg til underlag.
+ *
+ * @author Tarjei Skorgenes
+ */
+public final class Underlagslager implements Closeable {
+    private static final String DATAFIL = "underlag.data";
+
+    private static final String INDEKSFIL = "underlag.indeks";
+
+    private static final int INDEKSOPPFOERING = Long.BYTES + Long.BYTES;
+
+    private static final int STANDARD_BLOKKSTORLEIK = 1 << 30;
+
+    private final List<MappedByteBuffer> blokker = new ArrayList<>();
+
+    private final Noekkelindeks indeks = new Noekkelindeks();
+
+    private final Underlagskodek kodek;
+
+    private final FileChannel data;
+
+    private final FileChannel indeksfil;
+
+    private final int blokkstorleik;
+
+    private long slutt;
+
+    private Underlagslager(final Underlagskodek kodek, final FileChannel data, final FileChannel indeksfil,
+                           final int blokkstorleik) {
+        this.kodek = kodek;
+        this.data = data;
+        this.indeksfil = indeksfil;
+        this.blokkstorleik = blokkstorleik;
+    }
+
+    /**
+     * Opnar lageret i katalogen, eventuelt eit nytt, tomt lager dersom katalogen ikkje inneheld eit lager frå før.
+     * <p>
+     * Underlag som blei lagt til i datafila utan at dei rakk å bli registrert i indeksen, til dømes ved eit
+     * krasj, blir ignorert og overskrive av neste underlag som blir lagt til.
+     *
+     * @param katalog katalogen som lageret ligg i
+     * @param kodek   kodeken som underlaga blir skrive og lest med, må ha registrert kodekar for alle typar
+     *                koblingar og annotasjonar som underlaga inneheld
+     * @return det opna lageret
+     * @throws NullPointerException dersom nokon av argumenta er <code>null</code>
+     * @throws IOException          dersom lageret ikkje kan opnast
+     */
+    public static Underlagslager opne(final Path katalog, final Underlagskodek kodek) throws IOException {
+        return opne(katalog, kodek, STANDARD_BLOKKSTORLEIK);
+    }
+
+    static Underlagslager opne(final Path katalog, final Underlagskodek kodek, final int blokkstorleik)
+            throws IOException {
+        requireNonNull(katalog, "katalog er påkrevd, men var null");
+        requireNonNull(kodek, "kodek er påkrevd, men var null");
+        Files.createDirectories(katalog);
+        final FileChannel data = FileChannel.open(katalog.resolve(DATAFIL), CREATE, READ, WRITE);
+        try {
+            final FileChannel indeksfil = FileChannel.open(katalog.resolve(INDEKSFIL), CREATE, READ, WRITE);
+            try {
+                final Underlagslager lager = new Underlagslager(kodek, data, indeksfil, blokkstorleik);
+                lager.lesIndeks();
+                return lager;
+            } catch (final IOException | RuntimeException e) {
+                indeksfil.close();
+                throw e;
+            }
+        } catch (final IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Legg til underlaget i lageret under den angitte nøkkelen.
+     * <p>
+     * Underlaget blir skrive til disk før det blir registrert i indeksen.
+     *
+     * @param noekkel  nøkkelen som underlaget skal kunne hentast ut med
+     * @param underlag underlaget som skal leggast til
+     * @throws NullPointerException     dersom <code>underlag</code> er <code>null</code>
+     * @throws IllegalArgumentException dersom underlaget inneheld koblingar eller annotasjonar av typar som
+     *                                  kodeken ikkje kan skrive, eller er for stort til å få plass i ei blokk
+     * @throws IOException              dersom underlaget ikkje kan skrivast til disk
+     */
+    public void leggTil(final long noekkel, final Underlag underlag) throws IOException {
+        requireNonNull(underlag, "underlag er påkrevd, men var null");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream ut = new DataOutputStream(bytes)) {
+            ut.writeInt(0);
+            kodek.skriv(underlag, ut);
+        }
+        final ByteBuffer oppfoering = ByteBuffer.wrap(bytes.toByteArray());
+        oppfoering.putInt(0, oppfoering.remaining() - Integer.BYTES);
+        if (oppfoering.remaining() > blokkstorleik) {
+            throw new IllegalArgumentException(
+                    "Underlaget er for stort til å leggast i lageret, "
+                            + oppfoering.remaining() + " bytes er større enn blokkstorleiken på "
+                            + blokkstorleik + " bytes"
+            );
+        }
+
+        long posisjon = slutt;
+        if (posisjon % blokkstorleik + oppfoering.remaining() > blokkstorleik) {
+            posisjon += blokkstorleik - posisjon % blokkstorleik;
+        }
+        final int start = (int) (posisjon % blokkstorleik);
+        final int lengde = oppfoering.remaining();
+        final MappedByteBuffer mappa = blokk(posisjon);
+        mappa.duplicate().position(start).put(oppfoering);
+        // Underlaget må vere skrive til disk før indeksoppføringa, slik at indeksen aldri peikar på eit underlag
+        // som ikkje er skrive til disk etter eit krasj
+        mappa.force(start, lengde);
+
+        final ByteBuffer indeksoppfoering = ByteBuffer.allocate(INDEKSOPPFOERING)
+                .putLong(noekkel)
+                .putLong(posisjon)
+                .flip();
+        while (indeksoppfoering.hasRemaining()) {
+            indeksfil.write(indeksoppfoering, indeksfil.size());
+        }
+        indeks.put(noekkel, posisjon);
+        slutt = posisjon + lengde;
+    }
+
+    /**
+     * Hentar ut underlaget som sist blei lagt til under den angitte nøkkelen.
+     *
+     * @param noekkel nøkkelen som underlaget blei lagt til med
+     * @return underlaget, eller ingenting dersom lageret ikkje inneheld eit underlag for nøkkelen
+     * @throws IOException dersom underlaget ikkje kan lesast, til dømes fordi datafila er korrupt eller
+     *                     underlaget inneheld typar som kodeken ikkje kan lese
+     */
+    public Optional<Underlag> hent(final long noekkel) throws IOException {
+        final long posisjon = indeks.get(noekkel);
+        if (posisjon < 0) {
+            return Optional.empty();
+        }
+        final ByteBuffer blokk = blokker.get((int) (posisjon / blokkstorleik)).duplicate();
+        final int start = (int) (posisjon % blokkstorleik);
+        final int lengde = lesLengde(blokk, start);
+        blokk.limit(start + Integer.BYTES + lengde).position(start + Integer.BYTES);
+        return Optional.of(kodek.lesUnderlag(new BufferDataInput(blokk)));
+    }
+
+    /**
+     * Inneheld lageret eit underlag for nøkkelen?
+     *
+     * @param noekkel nøkkelen som skal slåast opp
+     * @return <code>true</code> dersom lageret inneheld eit underlag for nøkkelen, <code>false</code> ellers
+     */
+    public boolean inneheld(final long noekkel) {
+        return indeks.get(noekkel) >= 0;
+    }
+
+    /**
+     * Antall unike nøklar i lageret.
+     *
+     * @return antall nøklar
+     */
+    public int size() {
+        return indeks.size();
+    }
+
+    /**
+     * Skriv alle endringar til disk og lukkar filene til lageret.
+     *
+     * @throws IOException dersom endringane ikkje kan skrivast til disk
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (final MappedByteBuffer blokk : blokker) {
+                blokk.force();
+            }
+            indeksfil.force(true);
+        } finally {
+            try {
+                indeksfil.close();
+            } finally {
+                data.close();
+            }
+        }
+    }
+
+    private void lesIndeks() throws IOException {
+        final long antall = indeksfil.size() / INDEKSOPPFOERING;
+        final ByteBuffer buffer = ByteBuffer.allocate(INDEKSOPPFOERING * 4096);
+        final long storleik = data.size();
+        long siste = -1;
+        long lest = 0;
+        for (long posisjon = 0; lest < antall; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), (antall - lest) * INDEKSOPPFOERING));
+            while (buffer.hasRemaining()) {
+                final int n = indeksfil.read(buffer, posisjon);
+                if (n < 0) {
+                    throw new IOException("Indeksfila blei kortare under lesing");
+                }
+                posisjon += n;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final long noekkel = buffer.getLong();
+                final long dataposisjon = buffer.getLong();
+                if (dataposisjon <= siste || dataposisjon >= storleik) {
+                    throw new IOException("Ugyldig posisjon i datafila: " + dataposisjon);
+                }
+                indeks.put(noekkel, dataposisjon);
+                siste = dataposisjon;
+                lest++;
+            }
+        }
+        // Underlaga ligg i datafila i samme rekkefølge som i indeksen, det er derfor kun lengda til det siste
+        // underlaget som må lesast for å finne slutten, resten av datafila blir ikkje lest inn i minnet
+        if (siste >= 0) {
+            slutt = siste + Integer.BYTES + lesLengde(blokk(siste), (int) (siste % blokkstorleik));
+        }
+        // Ei ufullstendig indeksoppføring etter eit krasj blir skrive over av neste oppføring
+        indeksfil.truncate(antall * INDEKSOPPFOERING);
+    }
+
+    /**
+     * Les lengda til underlaget som startar på <code>start</code> i blokka.
+     *
+     * @param blokk blokka som underlaget ligg i
+     * @param start posisjonen til underlaget i blokka
+     * @return lengda til underlaget, utan lengda sjølv
+     * @throws IOException dersom lengda er negativ eller underlaget ikkje får plass i resten av blokka
+     */
+    private int lesLengde(final ByteBuffer blokk, final int start) throws IOException {
+        final int lengde = blokk.getInt(start);
+        if (lengde < 0 || lengde > blokkstorleik - start - Integer.BYTES) {
+            throw new IOException(
+                    "Ugyldig lengde " + lengde + " for underlaget på posisjon " + start + " i blokka, datafila er korrupt"
+            );
+        }
+        return lengde;
+    }
+
+    private MappedByteBuffer blokk(final long posisjon) throws IOException {
+        if (posisjon < 0 || posisjon >= Math.max(data.size(), slutt + blokkstorleik)) {
+            throw new IOException("Ugyldig posisjon i datafila: " + posisjon);
+        }
+        final long nummer = posisjon / blokkstorleik;
+        while (blokker.size() <= nummer) {
+            blokker.add(data.map(MapMode.READ_WRITE, (long) blokker.size() * blokkstorleik, blokkstorleik));
+        }
+        return blokker.get((int) nummer);
+    }
+}
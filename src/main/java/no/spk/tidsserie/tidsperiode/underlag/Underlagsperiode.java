@@ -4,7 +4,9 @@ import static java.util.Objects.requireNonNull;
 import static java.util.Optional.of;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -27,12 +29,15 @@ import no.spk.tidsserie.tidsperiode.Tidsperiode;
  */
 public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
         implements HarKoblingar, Annoterbar<Underlagsperiode>, Beregningsperiode<Underlagsperiode> {
-    private final Koblingar koblingar = new Koblingar();
-
     private final Map<Class<? extends BeregningsRegel<?>>, Object> cache = new HashMap<>();
 
+    private Koblingar koblingar;
+
     private final Annotasjonar annotasjonar;
 
+    // Koblingane kan vere delt med andre underlagsperioder, dei må i så fall kopierast før dei blir endra
+    private boolean deltKoblingar;
+
     /**
      * Konstruerer ei ny underlagsperiode som har ein frå og med- og ein til og med-dato ulik <code>null</code>.
      *
@@ -60,7 +65,13 @@ public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
     }
 
     private Underlagsperiode(final LocalDate fraOgMed, final Optional<LocalDate> tilOgMed, final Annotasjonar annotasjonar) {
+        this(fraOgMed, tilOgMed, new Koblingar(), annotasjonar);
+    }
+
+    private Underlagsperiode(final LocalDate fraOgMed, final Optional<LocalDate> tilOgMed, final Koblingar koblingar,
+                             final Annotasjonar annotasjonar) {
         super(fraOgMed, tilOgMed);
+        this.koblingar = koblingar;
         this.annotasjonar = annotasjonar;
     }
 
@@ -75,7 +86,32 @@ public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
 
     @Override
     public void kobleTil(final Tidsperiode<?> kobling) {
-        koblingar.add(kobling);
+        koblingarForEndring().add(kobling);
+    }
+
+    /**
+     * Koblar underlagsperioda til alle tidsperiodene, som alle må vere av nøyaktig den angitte typen.
+     *
+     * @param type      typen til tidsperiodene
+     * @param koblingar tidsperiodene som underlagsperioda skal koblast til
+     */
+    void kobleTil(final Class<?> type, final Collection<? extends Tidsperiode<?>> koblingar) {
+        koblingarForEndring().addAll(type, koblingar);
+    }
+
+    /**
+     * Koblar underlagsperioda til alle tidsperiodene, utan å sjekke om underlagsperioda allereie er kobla til
+     * nokon av dei.
+     * <p>
+     * Tidsperiodene må derfor vere unike og ikkje allereie kobla til underlagsperioda.
+     *
+     * @param koblingar tidsperiodene som underlagsperioda skal koblast til
+     * @see #kobleTil(Tidsperiode)
+     */
+    void kobleTilAlle(final List<? extends Tidsperiode<?>> koblingar) {
+        if (!koblingar.isEmpty()) {
+            koblingarForEndring().addAll(koblingar);
+        }
     }
 
     @Override
@@ -95,11 +131,11 @@ public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
 
     @Override
     public <T> T annotasjonFor(final Class<T> type) throws PaakrevdAnnotasjonManglarException {
-        final Optional<T> resultat = annotasjonar.lookup(type);
-        if (resultat.isEmpty()) {
+        final T resultat = annotasjonar.get(type);
+        if (resultat == null) {
             throw new PaakrevdAnnotasjonManglarException(this, type);
         }
-        return resultat.get();
+        return resultat;
     }
 
     @Override
@@ -136,6 +172,72 @@ public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
         return "UP[" + fraOgMed + "->" + tilOgMed.map(LocalDate::toString).orElse("") + "]";
     }
 
+    Koblingar koblingar() {
+        return koblingar;
+    }
+
+    Annotasjonar annotasjonar() {
+        return annotasjonar;
+    }
+
+    /**
+     * Returnerer ein del av underlagsperioda, som deler koblingane og annotasjonane til underlagsperioda.
+     * <p>
+     * Koblingane og annotasjonane blir ikkje kopiert, men blir kopiert første gang dei blir endra, både for
+     * delen og for underlagsperioda. Beregna verdiar blir ikkje delt, sidan dei kan avhenge av datoane til
+     * perioda.
+     * <p>
+     * Dersom delen dekker heile underlagsperioda blir underlagsperioda sjølv returnert.
+     *
+     * @param fraOgMed frå og med-dato for delen, må ligge innanfor underlagsperioda
+     * @param tilOgMed til og med-dato for delen, må ligge innanfor underlagsperioda
+     * @return ein del av underlagsperioda
+     */
+    Underlagsperiode del(final LocalDate fraOgMed, final Optional<LocalDate> tilOgMed) {
+        if (this.fraOgMed.equals(fraOgMed) && this.tilOgMed.equals(tilOgMed)) {
+            return this;
+        }
+        deltKoblingar = true;
+        final Underlagsperiode del = new Underlagsperiode(fraOgMed, tilOgMed, koblingar, annotasjonar.kopi());
+        del.deltKoblingar = true;
+        return del;
+    }
+
+    /**
+     * Sjekkar om underlagsperioda er kobla til dei samme tidsperiodene som <code>andre</code>.
+     *
+     * @param andre underlagsperioda som koblingane skal samanliknast med
+     * @return <code>true</code> dersom begge underlagsperiodene har like koblingar
+     */
+    boolean harLikeKoblingar(final Underlagsperiode andre) {
+        return koblingar.erLik(andre.koblingar);
+    }
+
+    /**
+     * Sjekkar om underlagsperioda er annotert med dei samme verdiane som <code>andre</code>.
+     *
+     * @param andre underlagsperioda som annotasjonane skal samanliknast med
+     * @return <code>true</code> dersom begge underlagsperiodene har like annotasjonar
+     */
+    boolean harLikeAnnotasjonar(final Underlagsperiode andre) {
+        return annotasjonar.erLik(andre.annotasjonar);
+    }
+
+    /**
+     * Genererer ei ny underlagsperiode som strekker seg frå denne underlagsperiodas frå og med-dato til
+     * <code>siste</code> sin til og med-dato, med kopi av denne underlagsperiodas koblingar og annotasjonar.
+     *
+     * @param siste den siste underlagsperioda som skal inngå i den nye underlagsperioda
+     * @return ei ny underlagsperiode som dekker begge underlagsperiodene og alle underlagsperioder mellom dei
+     * @see Samanslaaing
+     */
+    Underlagsperiode slaaSamanMed(final Underlagsperiode siste) {
+        final Underlagsperiode samanslaatt = new Underlagsperiode(fraOgMed, siste.tilOgMed, new Annotasjonar())
+                .annoterFra(this);
+        samanslaatt.koblingar.addAll(koblingar);
+        return samanslaatt;
+    }
+
     /**
      * Genererer en modifisert kopi av underlagsperioden, inkludert annotasjonane.
      * <p>
@@ -155,4 +257,14 @@ public class Underlagsperiode extends AbstractTidsperiode<Underlagsperiode>
         )
                 .annoterFra(this);
     }
+
+    private Koblingar koblingarForEndring() {
+        if (deltKoblingar) {
+            final Koblingar kopi = new Koblingar();
+            kopi.addAll(koblingar);
+            koblingar = kopi;
+            deltKoblingar = false;
+        }
+        return koblingar;
+    }
 }
@@ -58,7 +58,7 @@ public class UnderlagsperiodeBuilder implements Annoterbar<UnderlagsperiodeBuild
      */
     public Underlagsperiode bygg() {
         final Underlagsperiode periode = new Underlagsperiode(fraOgMed, tilOgMed);
-        annotasjonar.annoter(periode);
+        periode.annotasjonar().addAll(annotasjonar);
         koblingar.kobleTil(periode);
         return periode;
     }
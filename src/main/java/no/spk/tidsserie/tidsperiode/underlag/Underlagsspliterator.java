@@ -0,0 +1,77 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Underlagsspliterator} er ein {@link Spliterator} over underlagsperiodene til eit {@link Underlag}.
+ * <p>
+ * Sidan underlagsperiodene til eit underlag ligg i ei liste med tilfeldig tilgang og aldri blir endra etter at
+ * underlaget er konstruert, kan spliteratoren splittast i to nøyaktig like store halvdelar ved kvar splitting, og
+ * storleiken til kvar del er alltid kjent på førehand. Dette gjer han godt eigna for parallell prosessering.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Underlagsspliterator implements Spliterator<Underlagsperiode> {
+    private static final int KARAKTERISTIKKAR = SIZED | SUBSIZED | ORDERED | IMMUTABLE | NONNULL;
+
+    private final List<Underlagsperiode> perioder;
+
+    private int index;
+
+    private final int slutt;
+
+    /**
+     * Konstruerer ein ny spliterator over alle underlagsperiodene i <code>perioder</code>.
+     *
+     * @param perioder underlagsperiodene som skal traverserast, må støtte tilfeldig tilgang
+     */
+    Underlagsspliterator(final List<Underlagsperiode> perioder) {
+        this(perioder, 0, perioder.size());
+    }
+
+    private Underlagsspliterator(final List<Underlagsperiode> perioder, final int index, final int slutt) {
+        this.perioder = perioder;
+        this.index = index;
+        this.slutt = slutt;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Underlagsperiode> action) {
+        if (index >= slutt) {
+            return false;
+        }
+        action.accept(perioder.get(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Underlagsperiode> action) {
+        for (int i = index; i < slutt; i++) {
+            action.accept(perioder.get(i));
+        }
+        index = slutt;
+    }
+
+    @Override
+    public Spliterator<Underlagsperiode> trySplit() {
+        final int midt = (index + slutt) >>> 1;
+        if (midt <= index) {
+            return null;
+        }
+        final Underlagsspliterator foerste = new Underlagsspliterator(perioder, index, midt);
+        index = midt;
+        return foerste;
+    }
+
+    @Override
+    public long estimateSize() {
+        return slutt - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return KARAKTERISTIKKAR;
+    }
+}
@@ -0,0 +1,255 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Objects.requireNonNull;
+import static no.spk.tidsserie.tidsperiode.underlag.Feilmeldingar.feilmeldingVedOverlappandeTidsperioder;
+import static no.spk.tidsserie.tidsperiode.underlag.Feilmeldingar.feilmeldingVedTidsgapIUnderlaget;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.Tidsperiode;
+
+/**
+ * {@link Underlagsvalidering} er resultatet av valideringa av underlagsperiodene til eit {@link Underlag}.
+ * <p>
+ * Valideringa sjekkar at underlagsperiodene ikkje overlappar kvarandre, at det ikkje er tidsgap mellom dei og at
+ * dei er sortert i kronologisk rekkefølge. Alle tre sjekkane blir utført i eitt og samme pass over
+ * underlagsperiodene, der kvar underlagsperiode kun blir samanlikna med underlagsperioda rett før seg.
+ * Kostnaden er dermed lineær, og underlagsperiodene blir verken kopiert eller sortert.
+ * <p>
+ * Avvika blir rapportert som {@link Avvik} i staden for som tekst, feilmeldingar blir kun bygd når nokon ber om
+ * dei.
+ * <p>
+ * Underlaget validerer seg sjølv ved konstruksjon via assertions. Dersom systemeigenskapen
+ * {@value #SYSTEMEIGENSKAP} er satt til <code>true</code>, blir valideringa i staden alltid utført og
+ * konstruksjonen feilar med {@link IllegalArgumentException} for ugyldige underlag, også når assertions er
+ * slått av. Systemeigenskapen blir kun lest éin gong, når klassa blir lasta.
+ *
+ * @author Tarjei Skorgenes
+ * @see Underlag#valider()
+ */
+public final class Underlagsvalidering {
+    /**
+     * Systemeigenskapen som slår på validering av alle underlag ved konstruksjon, uavhengig av om assertions er
+     * slått på.
+     */
+    public static final String SYSTEMEIGENSKAP = "no.spk.tidsserie.tidsperiode.underlag.valider";
+
+    private static final boolean ALLTID_AKTIV = Boolean.getBoolean(SYSTEMEIGENSKAP);
+
+    /**
+     * Typane avvik som valideringa kan oppdage.
+     */
+    public enum Avvikstype {
+        /**
+         * To etterfølgande underlagsperioder overlappar kvarandre.
+         */
+        OVERLAPP,
+        /**
+         * Det er ein eller fleire dagar mellom to etterfølgande underlagsperioder som ingen underlagsperiode dekker.
+         */
+        TIDSGAP,
+        /**
+         * Ei underlagsperiode kjem før underlagsperioda rett før seg i kronologisk rekkefølge.
+         */
+        USORTERT
+    }
+
+    /**
+     * Eit avvik mellom to etterfølgande underlagsperioder.
+     */
+    public static final class Avvik {
+        private final Avvikstype type;
+
+        private final int index;
+
+        private final Underlagsperiode forrige;
+
+        private final Underlagsperiode neste;
+
+        Avvik(final Avvikstype type, final int index, final Underlagsperiode forrige, final Underlagsperiode neste) {
+            this.type = type;
+            this.index = index;
+            this.forrige = forrige;
+            this.neste = neste;
+        }
+
+        /**
+         * Kva type avvik det er snakk om.
+         *
+         * @return avvikstypen
+         */
+        public Avvikstype type() {
+            return type;
+        }
+
+        /**
+         * Indexen til den siste av dei to underlagsperiodene som avviket gjeld.
+         *
+         * @return indexen til {@link #neste()}
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Den første av dei to underlagsperiodene som avviket gjeld.
+         *
+         * @return underlagsperioda på index {@link #index()} - 1
+         */
+        public Underlagsperiode forrige() {
+            return forrige;
+        }
+
+        /**
+         * Den siste av dei to underlagsperiodene som avviket gjeld.
+         *
+         * @return underlagsperioda på index {@link #index()}
+         */
+        public Underlagsperiode neste() {
+            return neste;
+        }
+
+        @Override
+        public String toString() {
+            return type + "[" + index + ": " + forrige + ", " + neste + "]";
+        }
+    }
+
+    private final DetekterOverlappandePerioder overlapp = new DetekterOverlappandePerioder();
+
+    private final DetekterTidsgapMellomPerioder tidsgap = new DetekterTidsgapMellomPerioder();
+
+    // Vi allokerer ei liste med ein initiell kapasitet på 0 element av samme grunn som detektorane
+    private final List<Avvik> avvik = new ArrayList<>(0);
+
+    private Underlagsvalidering() {
+    }
+
+    /**
+     * Validerer underlagsperiodene i eitt pass.
+     *
+     * @param perioder underlagsperiodene som skal validerast, i den rekkefølga dei inngår i underlaget
+     * @return resultatet av valideringa
+     */
+    static Underlagsvalidering av(final Iterable<Underlagsperiode> perioder) {
+        final Underlagsvalidering validering = new Underlagsvalidering();
+        final Iterator<Underlagsperiode> it = perioder.iterator();
+        if (!it.hasNext()) {
+            return validering;
+        }
+        Underlagsperiode forrige = it.next();
+        for (int index = 1; it.hasNext(); index++) {
+            final Underlagsperiode neste = it.next();
+            if (overlapp(validering.overlapp, forrige, neste)) {
+                validering.avvik.add(new Avvik(Avvikstype.OVERLAPP, index, forrige, neste));
+            }
+            if (tidsgap(validering.tidsgap, forrige, neste)) {
+                validering.avvik.add(new Avvik(Avvikstype.TIDSGAP, index, forrige, neste));
+            }
+            if (Tidsperiode.compare(forrige, neste) > 0) {
+                validering.avvik.add(new Avvik(Avvikstype.USORTERT, index, forrige, neste));
+            }
+            forrige = neste;
+        }
+        return validering;
+    }
+
+    /**
+     * Skal alle underlag validerast ved konstruksjon, uavhengig av om assertions er slått på?
+     *
+     * @return <code>true</code> dersom {@link #SYSTEMEIGENSKAP} var satt til <code>true</code> då klassa blei lasta
+     */
+    static boolean erAlltidAktiv() {
+        return ALLTID_AKTIV;
+    }
+
+    /**
+     * Er underlagsperiodene gyldige?
+     *
+     * @return <code>true</code> dersom valideringa ikkje fann nokon avvik
+     */
+    public boolean erGyldig() {
+        return avvik.isEmpty();
+    }
+
+    /**
+     * Returnerer alle avvika som valideringa fann, i den rekkefølga dei blei oppdaga.
+     *
+     * @return ei ikkje-modifiserbar liste med avvik, tom dersom underlagsperiodene er gyldige
+     */
+    public List<Avvik> avvik() {
+        return List.copyOf(avvik);
+    }
+
+    /**
+     * Returnerer alle avvika av den angitte typen, i den rekkefølga dei blei oppdaga.
+     *
+     * @param type avvikstypen
+     * @return ein straum med avvika av den angitte typen
+     */
+    public Stream<Avvik> avvik(final Avvikstype type) {
+        requireNonNull(type, "avvikstype er påkrevd, men var null");
+        return avvik.stream().filter(a -> a.type == type);
+    }
+
+    /**
+     * Feilar dersom valideringa fann eitt eller fleire avvik.
+     *
+     * @throws IllegalArgumentException dersom underlagsperiodene ikkje er gyldige
+     * @see #feilmelding()
+     */
+    public void feilVissUgyldig() {
+        if (!erGyldig()) {
+            throw new IllegalArgumentException(feilmelding());
+        }
+    }
+
+    /**
+     * Genererer ei feilmelding som beskriv avvika.
+     * <p>
+     * Dersom det er fleire typar avvik blir kun den første typen i rekkefølga overlapp, tidsgap og sortering
+     * beskrive.
+     *
+     * @return ei feilmelding som beskriv avvika, eller ein tom tekst dersom underlagsperiodene er gyldige
+     */
+    public String feilmelding() {
+        if (overlapp.harOverlappande()) {
+            return feilmeldingVedOverlappandeTidsperioder(
+                    "Eit underlag kan ikkje inneholde underlagsperioder som overlappar kvarandre",
+                    overlapp
+            );
+        }
+        if (tidsgap.harTidsgap()) {
+            return feilmeldingVedTidsgapIUnderlaget(
+                    "Eit underlag kan ikkje inneholde tidsgap mellom underlagsperiodene",
+                    tidsgap
+            );
+        }
+        if (!erGyldig()) {
+            return "underlaget krever at underlagsperiodene er sortert i kronologisk rekkefølge";
+        }
+        return "";
+    }
+
+    @Override
+    public String toString() {
+        return "Underlagsvalidering" + avvik;
+    }
+
+    private static boolean overlapp(final DetekterOverlappandePerioder detektor, final Underlagsperiode forrige,
+                                    final Underlagsperiode neste) {
+        final int antall = detektor.antall();
+        detektor.apply(forrige, neste);
+        return detektor.antall() > antall;
+    }
+
+    private static boolean tidsgap(final DetekterTidsgapMellomPerioder detektor, final Underlagsperiode forrige,
+                                   final Underlagsperiode neste) {
+        final int antall = detektor.antall();
+        detektor.apply(forrige, neste);
+        return detektor.antall() > antall;
+    }
+}
@@ -0,0 +1,68 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link Utval} er ei ikkje-modifiserbar visning av eit utval av underlagsperiodene til eit anna underlag,
+ * representert ved indexane til underlagsperiodene i kjelda.
+ * <p>
+ * Visninga blir brukt når ei {@link Underlag#restrict(java.util.function.Predicate) avgrensing} ikkje resulterer i
+ * eit samanhengande utsnitt av underlagsperiodene, utsnitt blir i staden representert via {@link List#subList(int, int)}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class Utval extends AbstractList<Underlagsperiode> implements RandomAccess {
+    private final List<Underlagsperiode> kjelde;
+
+    private final int[] indexar;
+
+    private Utval(final List<Underlagsperiode> kjelde, final int[] indexar) {
+        this.kjelde = kjelde;
+        this.indexar = indexar;
+    }
+
+    /**
+     * Returnerer ei visning av underlagsperiodene i <code>kjelde</code> som er markert i <code>treff</code>.
+     * <p>
+     * Dersom treffa er samanhengande blir eit utsnitt av kjelda returnert, ellers ei visning via indexane til treffa.
+     *
+     * @param kjelde underlagsperiodene som utvalet blir gjort frå
+     * @param treff  indexane til underlagsperiodene som skal vere med i utvalet
+     * @return ei visning av dei utvalde underlagsperiodene
+     */
+    static List<Underlagsperiode> av(final List<Underlagsperiode> kjelde, final BitSet treff) {
+        final int antall = treff.cardinality();
+        if (antall == 0) {
+            return List.of();
+        }
+        final int foerste = treff.nextSetBit(0);
+        final int siste = treff.length() - 1;
+        if (siste - foerste + 1 == antall) {
+            return kjelde.subList(foerste, siste + 1);
+        }
+        return new Utval(kjelde, treff.stream().toArray());
+    }
+
+    /**
+     * Sjekkar om utvalet er samanhengande, dvs om det er eit utsnitt av kjelda utan hol.
+     *
+     * @param utval utvalet som skal sjekkast
+     * @return <code>true</code> dersom utvalet ikkje er ei visning via indexar
+     */
+    static boolean erSamanhengande(final List<Underlagsperiode> utval) {
+        return !(utval instanceof Utval);
+    }
+
+    @Override
+    public Underlagsperiode get(final int index) {
+        return kjelde.get(indexar[index]);
+    }
+
+    @Override
+    public int size() {
+        return indexar.length;
+    }
+}
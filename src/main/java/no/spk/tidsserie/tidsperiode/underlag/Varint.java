@@ -0,0 +1,78 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link Varint} inneheld kodinga av heiltal og tekst med variabel lengde som {@link Underlagskodek} brukar.
+ * <p>
+ * Heiltal blir skrive med 7 bit pr byte, minst signifikante gruppe først, der høgaste bit i kvar byte indikerer
+ * om fleire bytes følgjer. Heiltal med forteikn blir først zigzag-koda, slik at tal nær 0 blir korte uavhengig
+ * av forteikn.
+ *
+ * @author Tarjei Skorgenes
+ */
+final class Varint {
+    private Varint() {
+    }
+
+    static void skriv(final DataOutput ut, final long verdi) throws IOException {
+        long v = verdi;
+        while ((v & ~0x7FL) != 0) {
+            ut.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        ut.writeByte((int) v);
+    }
+
+    static long les(final DataInput inn) throws IOException {
+        long verdi = 0;
+        for (int skift = 0; skift < 64; skift += 7) {
+            final byte b = inn.readByte();
+            verdi |= (long) (b & 0x7F) << skift;
+            if ((b & 0x80) == 0) {
+                return verdi;
+            }
+        }
+        throw new IOException("Ugyldig varint, meir enn 10 bytes");
+    }
+
+    static void skrivMedForteikn(final DataOutput ut, final long verdi) throws IOException {
+        skriv(ut, (verdi << 1) ^ (verdi >> 63));
+    }
+
+    static long lesMedForteikn(final DataInput inn) throws IOException {
+        final long v = les(inn);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Les eit ikkje-negativt antall, typisk lengda til ei samling.
+     *
+     * @param inn straumen som antallet skal lesast frå
+     * @return antallet
+     * @throws IOException dersom antallet ikkje er eit gyldig ikkje-negativt <code>int</code>
+     */
+    static int lesAntall(final DataInput inn) throws IOException {
+        final long antall = les(inn);
+        if (antall < 0 || antall > Integer.MAX_VALUE) {
+            throw new IOException("Ugyldig antall: " + antall);
+        }
+        return (int) antall;
+    }
+
+    static void skrivTekst(final DataOutput ut, final String tekst) throws IOException {
+        final byte[] bytes = tekst.getBytes(UTF_8);
+        skriv(ut, bytes.length);
+        ut.write(bytes);
+    }
+
+    static String lesTekst(final DataInput inn) throws IOException {
+        final byte[] bytes = new byte[lesAntall(inn)];
+        inn.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
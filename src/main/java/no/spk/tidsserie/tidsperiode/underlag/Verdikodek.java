@@ -0,0 +1,36 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link Verdikodek} representerer den binære kodinga av verdiar av ein bestemt type, for bruk av
+ * {@link Underlagskodek} ved skriving og lesing av koblingar og annotasjonar.
+ * <p>
+ * Kodeken må lese nøyaktig dei bytane som han skreiv, og skal ikkje skrive informasjon om typen til verdien,
+ * den blir skrive av {@link Underlagskodek}.
+ *
+ * @param <T> typen til verdiane som kodeken kan skrive og lese
+ * @author Tarjei Skorgenes
+ * @see Underlagskodek#registrer(Class, Verdikodek)
+ */
+public interface Verdikodek<T> {
+    /**
+     * Skriv verdien til <code>ut</code>.
+     *
+     * @param verdi verdien som skal skrivast
+     * @param ut    straumen som verdien skal skrivast til
+     * @throws IOException dersom skrivinga feilar
+     */
+    void skriv(T verdi, DataOutput ut) throws IOException;
+
+    /**
+     * Les ein verdi frå <code>inn</code>.
+     *
+     * @param inn straumen som verdien skal lesast frå
+     * @return verdien som blei lest
+     * @throws IOException dersom lesinga feilar
+     */
+    T les(DataInput inn) throws IOException;
+}
@@ -0,0 +1,99 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.of;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static no.spk.tidsserie.tidsperiode.Datoar.dato;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Enheitstestar for {@link Batchperiodisering}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class BatchperiodiseringTest {
+    /**
+     * Verifiserer at underlaga blir levert til mottakaren i samme rekkefølge som gruppene kom inn i, sjølv om
+     * periodiseringa av gruppene skjer parallelt.
+     */
+    @Test
+    void skalLevereUnderlagaISammeRekkefoelgeSomGruppene() {
+        final List<Integer> leverte = new ArrayList<>();
+        Batchperiodisering
+                .medForkJoinPool(ForkJoinPool.commonPool())
+                .maksAntallIArbeid(3)
+                .periodiser(
+                        grupper(200),
+                        (noekkel, underlag) -> {
+                            assertThat(underlag.toList()).hasSize(noekkel % 7 + 1);
+                            leverte.add(noekkel);
+                        }
+                );
+        assertThat(leverte).containsExactlyElementsOf(range(0, 200).boxed().collect(toList()));
+    }
+
+    /**
+     * Verifiserer at periodiseringa aldri har fleire grupper under arbeid samtidig enn det som er konfigurert.
+     */
+    @Test
+    void skalAvgrenseAntallGrupperIArbeidSamtidig() {
+        final AtomicInteger iArbeid = new AtomicInteger();
+        final AtomicInteger maks = new AtomicInteger();
+        Batchperiodisering
+                .medVirtuelleTraadar()
+                .maksAntallIArbeid(4)
+                .factory(() -> {
+                    maks.accumulateAndGet(iArbeid.incrementAndGet(), Math::max);
+                    return new UnderlagFactory();
+                })
+                .periodiser(
+                        grupper(100),
+                        (noekkel, underlag) -> iArbeid.decrementAndGet()
+                );
+        assertThat(maks.get()).isBetween(1, 4);
+        assertThat(iArbeid.get()).isZero();
+    }
+
+    /**
+     * Verifiserer at feil frå periodiseringa av ei gruppe blir kasta vidare til klienten.
+     */
+    @Test
+    void skalKasteVidareFeilFraPeriodiseringa() {
+        final AtomicInteger leverte = new AtomicInteger();
+        assertThatCode(
+                () -> Batchperiodisering
+                        .medVirtuelleTraadar()
+                        .factory(() -> {
+                            throw new IllegalStateException("periodiseringa feila");
+                        })
+                        .periodiser(grupper(10), (noekkel, underlag) -> leverte.incrementAndGet())
+        )
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("periodiseringa feila");
+        assertThat(leverte.get()).isZero();
+    }
+
+    private static Stream<Periodegruppe<Integer>> grupper(final int antall) {
+        return range(0, antall)
+                .mapToObj(
+                        noekkel -> new Periodegruppe<>(
+                                noekkel,
+                                range(0, noekkel % 7 + 1)
+                                        .mapToObj(i -> dato("2000.01.01").plusMonths(i))
+                                        .map(fraOgMed -> new GenerellTidsperiode(fraOgMed, of(fraOgMed.plusMonths(1).minusDays(1))))
+                                        .collect(toList())
+                        )
+                );
+    }
+}
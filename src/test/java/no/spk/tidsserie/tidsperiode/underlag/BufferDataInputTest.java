@@ -0,0 +1,35 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Enheitstestar for {@link BufferDataInput}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class BufferDataInputTest {
+    /**
+     * Verifiserer at {@link BufferDataInput#readLine()} les linjer på samme vis som {@link DataInputStream}, med
+     * <code>\n</code>, <code>\r</code> og <code>\r\n</code> som linjeskift og <code>null</code> når det ikkje er
+     * meir å lese.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    void skalLeseLinjerLiktSomDataInputStream() throws IOException {
+        final byte[] bytes = "første\nandre\r\ntredje\r\rsiste".getBytes(ISO_8859_1);
+        final BufferDataInput inn = new BufferDataInput(ByteBuffer.wrap(bytes));
+        final DataInputStream fasit = new DataInputStream(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < 6; i++) {
+            assertThat(inn.readLine()).isEqualTo(fasit.readLine());
+        }
+        assertThat(inn.readLine()).isNull();
+    }
+}
@@ -0,0 +1,183 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static no.spk.tidsserie.tidsperiode.Datoar.dato;
+import static no.spk.tidsserie.tidsperiode.underlag.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.atIndex;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.Aar;
+import no.spk.tidsserie.tidsperiode.Aarstall;
+import no.spk.tidsserie.tidsperiode.Maaned;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Enheitstestar for {@link Kolonneunderlag} og {@link Kolonneperiode}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class KolonneunderlagTest {
+    /**
+     * Verifiserer at konvertering frå og tilbake til {@link Underlag} tar vare på datoane, koblingane og
+     * annotasjonane til underlagsperiodene og underlaget.
+     */
+    @Test
+    void skalTaVarePaaUnderlagsperiodeneVedKonverteringFraaOgTilUnderlag() {
+        final Aar aar = new Aar(new Aarstall(2001));
+        final Underlag underlag = new UnderlagFactory(
+                new Observasjonsperiode(dato("2001.01.01"), dato("2001.12.31"))
+        )
+                .addPerioder(aar)
+                .addPerioder(aar.maaneder())
+                .periodiser();
+        underlag.annoter(String.class, "underlag");
+        underlag.toList().get(1).annoter(Integer.class, 2);
+
+        final Kolonneunderlag kolonner = Kolonneunderlag.av(underlag);
+        assertThat(kolonner.size()).isEqualTo(12);
+        assertThat(kolonner.annotasjonFor(String.class)).isEqualTo("underlag");
+
+        final Underlag tilbake = kolonner.tilUnderlag();
+        assertThat(tilbake.annotasjonFor(String.class)).isEqualTo("underlag");
+        assertThat(tilbake)
+                .harPerioder(12)
+                .periode(
+                        atIndex(1),
+                        periode -> periode
+                                .harFraOgMed("2001.02.01")
+                                .harTilOgMed("2001.02.28")
+                                .harAnnotasjon(Integer.class, 2)
+                                .harKoblingAvType(Aar.class, kobling -> assertThat(kobling).isEqualTo(aar))
+                                .harKoblingAvType(
+                                        Maaned.class,
+                                        kobling -> assertThat(kobling.fraOgMed()).isEqualTo(dato("2001.02.01"))
+                                )
+                );
+    }
+
+    /**
+     * Verifiserer at ei løpande siste underlagsperiode blir representert som løpande i kolonneunderlaget.
+     */
+    @Test
+    void skalStoetteLoepandeSisteUnderlagsperiode() {
+        final Kolonneunderlag kolonner = Kolonneunderlag.av(
+                new Underlag(
+                        Stream.of(
+                                new Underlagsperiode(dato("2000.01.01"), dato("2000.12.31")),
+                                new Underlagsperiode(dato("2001.01.01"), empty())
+                        )
+                )
+        );
+        assertThat(kolonner.periode(0).tilOgMed()).isEqualTo(of(dato("2000.12.31")));
+        assertThat(kolonner.periode(1).tilOgMed()).isEqualTo(empty());
+    }
+
+    /**
+     * Verifiserer at datoar som ikkje kan representerast som <code>int</code> epoch-dagar blir avvist.
+     */
+    @Test
+    void skalAvviseDatoarUtanforVerdiomraadet() {
+        assertThatCode(
+                () -> Kolonneunderlag.av(
+                        new Underlag(
+                                Stream.of(
+                                        new Underlagsperiode(LocalDate.MAX.minusDays(1), LocalDate.MAX)
+                                )
+                        )
+                )
+        )
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Verifiserer at kolonneperioder for samme rad deler annotasjonar, og at annotasjonar kan fjernast igjen
+     * ved å annotere med ein tom verdi.
+     */
+    @Test
+    void skalDeleAnnotasjonarMellomKolonneperioderForSammeRad() {
+        final Kolonneunderlag kolonner = eitKolonneunderlag();
+
+        kolonner.periode(0).annoter(Integer.class, 1);
+        assertThat(kolonner.periode(0).annotasjonFor(Integer.class)).isEqualTo(1);
+        assertThat(kolonner.periode(1).valgfriAnnotasjonFor(Integer.class)).isEqualTo(empty());
+
+        kolonner.periode(1).annoterFra(kolonner.periode(0));
+        assertThat(kolonner.periode(1).annotasjonFor(Integer.class)).isEqualTo(1);
+
+        kolonner.periode(0).annoter(Integer.class, empty());
+        assertThat(kolonner.periode(0).valgfriAnnotasjonFor(Integer.class)).isEqualTo(empty());
+
+        assertThatCode(() -> kolonner.periode(0).annotasjonFor(Integer.class))
+                .isInstanceOf(PaakrevdAnnotasjonManglarException.class);
+    }
+
+    /**
+     * Verifiserer at beregna verdiar blir cacha pr rad, også når regelen returnerer <code>null</code>.
+     */
+    @Test
+    void skalCacheBeregnaVerdiarPrRad() {
+        final Kolonneunderlag kolonner = eitKolonneunderlag();
+        final Teljar teljar = new Teljar();
+        final IngenVerdi ingenVerdi = new IngenVerdi();
+        kolonner.forEach(periode -> periode.annoter(Teljar.class, teljar).annoter(IngenVerdi.class, ingenVerdi));
+
+        assertThat(kolonner.periode(0).beregn(Teljar.class)).isEqualTo(1);
+        assertThat(kolonner.periode(0).beregn(Teljar.class)).isEqualTo(1);
+        assertThat(kolonner.periode(1).beregn(Teljar.class)).isEqualTo(2);
+
+        assertThat(kolonner.periode(0).<Integer>beregn(IngenVerdi.class)).isNull();
+        assertThat(kolonner.periode(0).<Integer>beregn(IngenVerdi.class)).isNull();
+        assertThat(ingenVerdi.kall).isEqualTo(1);
+    }
+
+    /**
+     * Verifiserer at kolonneperiodene kan koblast til tidsperioder og at det blir feila dersom ein ber om
+     * ei enkelt kobling for ein type som perioda har fleire koblingar til.
+     */
+    @Test
+    void skalKobleKolonneperioderTilTidsperioder() {
+        final Kolonneunderlag kolonner = eitKolonneunderlag();
+        final Kolonneperiode periode = kolonner.periode(0);
+        final Aar aar = new Aar(new Aarstall(2000));
+
+        periode.kobleTil(aar);
+        periode.kobleTil(aar);
+        assertThat(periode.koblingAvType(Aar.class)).isEqualTo(of(aar));
+        assertThat(kolonner.periode(1).koblingAvType(Aar.class)).isEqualTo(empty());
+
+        periode.kobleTil(new Aar(new Aarstall(2001)));
+        assertThat(periode.koblingarAvType(Aar.class)).hasSize(2);
+        assertThatCode(() -> periode.koblingAvType(Aar.class))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Kolonneunderlag eitKolonneunderlag() {
+        return new UnderlagFactory(new Observasjonsperiode(dato("2000.01.01"), dato("2000.12.31")))
+                .addPerioder(new Aar(new Aarstall(2000)).maaneder())
+                .periodiserKolonnevis();
+    }
+
+    private static class Teljar implements BeregningsRegel<Integer> {
+        private int teller;
+
+        @Override
+        public Integer beregn(final Beregningsperiode<?> periode) {
+            return ++teller;
+        }
+    }
+
+    private static class IngenVerdi implements BeregningsRegel<Integer> {
+        private int kall;
+
+        @Override
+        public Integer beregn(final Beregningsperiode<?> periode) {
+            kall++;
+            return null;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import static java.time.LocalDate.now;
 import static java.time.temporal.TemporalAdjusters.lastDayOfYear;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.IntStream.range;
 import static no.spk.tidsserie.tidsperiode.Datoar.dato;
 import static no.spk.tidsserie.tidsperiode.underlag.Assertions.assertThat;
@@ -11,13 +12,22 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.atIndex;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import no.spk.tidsserie.tidsperiode.Aar;
+import no.spk.tidsserie.tidsperiode.Aarstall;
 import no.spk.tidsserie.tidsperiode.Datoar;
 import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
+import no.spk.tidsserie.tidsperiode.Maaned;
 import no.spk.tidsserie.tidsperiode.Tidsperiode;
 import no.spk.tidsserie.tidsperiode.underlag.Assertions.UnderlagAssertion;
 import no.spk.tidsserie.tidsperiode.underlag.Assertions.UnderlagsperiodeAssertion;
@@ -71,6 +81,38 @@ class UnderlagFactoryTest {
         ;
     }
 
+    /**
+     * Verifiserer at kvar underlagsperiode blir kobla til nøyaktig dei tidsperiodene som overlappar den, også
+     * når input-periodene har svært varierande lengde og mange av dei overlappar kvarandre.
+     */
+    @Test
+    void skalKobleUnderlagsperiodeneTilAlleOgKunDeiOverlappandeTidsperiodene() {
+        final List<GenerellTidsperiode> perioder = range(0, 500)
+                .mapToObj(i -> periode(
+                        dato("2000.01.01").plusDays(i * 7L),
+                        i % 10 == 0 ? empty() : of(dato("2000.01.01").plusDays(i * 7L + (i * 37L) % 400))
+                ))
+                .collect(toList());
+
+        final Underlag underlag = new UnderlagFactory(grenser)
+                .addPerioder(perioder)
+                .periodiser();
+
+        assertThat(underlag.stream()).allSatisfy(
+                underlagsperiode -> assertThat(
+                        underlagsperiode
+                                .koblingarAvType(GenerellTidsperiode.class)
+                                .collect(toList())
+                )
+                        .containsExactlyInAnyOrderElementsOf(
+                                perioder
+                                        .stream()
+                                        .filter(underlagsperiode::overlapper)
+                                        .collect(toList())
+                        )
+        );
+    }
+
     @Test
     void skal_inkludere_filtrere_koblingar_i_periodiseringa_men_ikkje_legge_dei_til_som_koblingar() {
         final int antallPerioder = 30000;
@@ -85,6 +127,370 @@ class UnderlagFactoryTest {
                 );
     }
 
+    /**
+     * Verifiserer at typefiltreringa av koblingar kun koblar underlagsperiodene til input-perioder av dei angitte
+     * typane, og at input-periodene av dei andre typane framleis bidreg til periodiseringa.
+     */
+    @Test
+    void skalKunKobleTilInputperioderAvAngitteTyparVedTypefiltrering() {
+        final GenerellTidsperiode a = periode(dato("2001.03.01"), of(dato("2001.03.20")));
+        final GenerellTidsperiode b = periode(dato("2001.03.10"), empty());
+        final Aar aar = new Aar(new Aarstall(2001));
+        final Underlag underlag = new UnderlagFactory(observasjonsperiode("2001.01.01", "2001.12.31"))
+                .addPerioder(aar.maaneder())
+                .addPerioder(aar, a, b)
+                .filtrerKoblingarAvType(GenerellTidsperiode.class, Aar.class)
+                .periodiser();
+
+        assertThat(underlag)
+                .harPerioder(14)
+                .allSatisfy(periode -> periode.harKoblingAvType(Aar.class, kobling -> assertThat(kobling).isSameAs(aar)))
+                .allSatisfy(periode -> periode.harKoblingarAvType(Maaned.class, koblingar -> koblingar.isEmpty()))
+                .periode(atIndex(2), periode -> periode.harTilOgMed("2001.03.09").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.containsOnly(a)))
+                .periode(atIndex(3), periode -> periode.harTilOgMed("2001.03.20").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.containsOnly(a, b)))
+                .periode(atIndex(4), periode -> periode.harTilOgMed("2001.03.31").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.containsOnly(b)));
+    }
+
+    /**
+     * Verifiserer at samanslåing av like underlagsperioder slår saman nabo-underlagsperioder som kun skil seg på
+     * input-perioder som er filtrert bort frå koblingane.
+     */
+    @Test
+    void skalSlaaSamanUnderlagsperioderMedLikeKoblingar() {
+        final GenerellTidsperiode a = periode(dato("2001.01.01"), of(dato("2001.06.30")));
+        final GenerellTidsperiode b = periode(dato("2001.07.01"), empty());
+        final Aar aar = new Aar(new Aarstall(2001));
+        final Underlag underlag = new UnderlagFactory(observasjonsperiode("2001.01.01", "2001.12.31"))
+                .addPerioder(aar.maaneder())
+                .addPerioder(a, b)
+                .filtrerKoblingarAvType(GenerellTidsperiode.class)
+                .slaaSamanLikeUnderlagsperioder()
+                .periodiser();
+
+        assertThat(underlag)
+                .harPerioder(2)
+                .periode(atIndex(0), periode -> periode.harFraOgMed("2001.01.01").harTilOgMed("2001.06.30").harKoblingAvType(GenerellTidsperiode.class, kobling -> assertThat(kobling).isSameAs(a)))
+                .periode(atIndex(1), periode -> periode.harFraOgMed("2001.07.01").harTilOgMed("2001.12.31").harKoblingAvType(GenerellTidsperiode.class, kobling -> assertThat(kobling).isSameAs(b)));
+    }
+
+    /**
+     * Verifiserer at periodisering pr år gir samme underlag for kvart år som ei ordinær periodisering med
+     * observasjonsperioda avgrensa til det aktuelle året.
+     */
+    @Test
+    void skalPeriodiserePerAarLiktSomOrdinaerPeriodiseringAvKvartAar() {
+        final Random random = new Random(20240505L);
+        final Observasjonsperiode observasjonsperiode = observasjonsperiode("2001.03.15", "2008.06.30");
+        for (int forsoek = 0; forsoek < 100; forsoek++) {
+            final List<GenerellTidsperiode> perioder = tilfeldigePerioder(random, random.nextInt(12));
+
+            final Map<Aarstall, Underlag> perAar = new UnderlagFactory(observasjonsperiode)
+                    .addPerioder(perioder)
+                    .periodiserPerAar();
+
+            assertThat(perAar.keySet())
+                    .containsExactlyElementsOf(
+                            observasjonsperiode.overlappendeAar().stream().map(Aar::aarstall).collect(toList())
+                    );
+            for (final Aar aar : observasjonsperiode.overlappendeAar()) {
+                final Underlag forventa = new UnderlagFactory(observasjonsperiode.intersect(aar).orElseThrow())
+                        .addPerioder(perioder)
+                        .periodiser();
+                assertThat(beskriv(perAar.get(aar.aarstall())))
+                        .as("periodisering av %s for %s", perioder, aar)
+                        .isEqualTo(beskriv(forventa));
+            }
+        }
+    }
+
+    /**
+     * Verifiserer at periodisering pr år feilar dersom observasjonsperioda er løpande.
+     */
+    @Test
+    void skalFeileVedPeriodiseringPerAarForLoepandeObservasjonsperiode() {
+        assertThatCode(
+                () -> new UnderlagFactory(observasjonsperiode("2001.01.01", løpende()))
+                        .addPerioder(periode(dato("2001.01.01"), empty()))
+                        .periodiserPerAar()
+        )
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Verifiserer at reperiodisering etter at input-perioder er lagt til og fjerna, gir samme underlagsperioder og
+     * koblingar som ei full periodisering av dei oppdaterte input-periodene.
+     */
+    @Test
+    void skalReperiodisereLiktSomFullPeriodiseringVedNyeOgFjernaPerioder() {
+        final Random random = new Random(20240101L);
+        for (int forsoek = 0; forsoek < 200; forsoek++) {
+            final Observasjonsperiode observasjonsperiode = forsoek % 2 == 0
+                    ? observasjonsperiode("2001.01.01", "2010.12.31")
+                    : observasjonsperiode("2001.01.01", løpende());
+            final List<GenerellTidsperiode> perioder = tilfeldigePerioder(random, 1 + random.nextInt(20));
+            final List<GenerellTidsperiode> nye = tilfeldigePerioder(random, random.nextInt(3));
+            final List<GenerellTidsperiode> fjerna = perioder.subList(0, random.nextInt(Math.min(3, perioder.size()) + 1));
+
+            final UnderlagFactory factory = new UnderlagFactory(observasjonsperiode).addPerioder(perioder);
+            final Underlag forrige = factory.periodiser();
+            final Underlag reperiodisert = factory.reperiodiser(forrige, nye, new ArrayList<>(fjerna));
+
+            final List<GenerellTidsperiode> oppdaterte = new ArrayList<>(perioder.subList(fjerna.size(), perioder.size()));
+            oppdaterte.addAll(nye);
+            final Underlag forventa = new UnderlagFactory(observasjonsperiode).addPerioder(oppdaterte).periodiser();
+
+            assertThat(beskriv(reperiodisert))
+                    .as("reperiodisering av %s, nye %s, fjerna %s", perioder, nye, fjerna)
+                    .isEqualTo(beskriv(forventa));
+        }
+    }
+
+    /**
+     * Verifiserer at reperiodisering med samanslåing av like underlagsperioder gir samme underlagsperioder og
+     * koblingar som ei full periodisering av dei oppdaterte input-periodene, også etter fleire reperiodiseringar.
+     */
+    @Test
+    void skalReperiodisereLiktSomFullPeriodiseringVedSamanslaaingAvLikeUnderlagsperioder() {
+        final Random random = new Random(20240606L);
+        final Predicate<Tidsperiode<?>> filter = periode -> periode.fraOgMed().getMonthValue() % 2 == 0;
+        for (int forsoek = 0; forsoek < 200; forsoek++) {
+            final Observasjonsperiode observasjonsperiode = forsoek % 2 == 0
+                    ? observasjonsperiode("2001.01.01", "2010.12.31")
+                    : observasjonsperiode("2001.01.01", løpende());
+            final List<GenerellTidsperiode> oppdaterte = tilfeldigePerioder(random, 1 + random.nextInt(20));
+            final UnderlagFactory factory = new UnderlagFactory(observasjonsperiode)
+                    .addPerioder(oppdaterte)
+                    .filtrerKoblinger(filter)
+                    .slaaSamanLikeUnderlagsperioder();
+            Underlag underlag = factory.periodiser();
+            for (int endring = 0; endring < 2; endring++) {
+                final List<GenerellTidsperiode> nye = tilfeldigePerioder(random, random.nextInt(3));
+                final List<GenerellTidsperiode> fjerna = new ArrayList<>(
+                        oppdaterte.subList(0, random.nextInt(Math.min(3, oppdaterte.size()) + 1))
+                );
+                underlag = factory.reperiodiser(underlag, nye, fjerna);
+                fjerna.forEach(oppdaterte::remove);
+                oppdaterte.addAll(nye);
+
+                final Underlag forventa = new UnderlagFactory(observasjonsperiode)
+                        .addPerioder(oppdaterte)
+                        .filtrerKoblinger(filter)
+                        .slaaSamanLikeUnderlagsperioder()
+                        .periodiser();
+                assertThat(beskriv(underlag))
+                        .as("reperiodisering %d med samanslåing, nye %s, fjerna %s", endring, nye, fjerna)
+                        .isEqualTo(beskriv(forventa));
+            }
+        }
+    }
+
+    /**
+     * Verifiserer at ein factory som blir nullstilt og gjenbrukt, gir samme underlag som ein ny factory, og at
+     * underlag periodisert før nullstillinga ikkje blir påverka av seinare periodiseringar.
+     */
+    @Test
+    void skalGjenbrukeFactoryEtterNullstilling() {
+        final Random random = new Random(20240303L);
+        final Observasjonsperiode observasjonsperiode = observasjonsperiode("2001.01.01", løpende());
+        final UnderlagFactory factory = new UnderlagFactory(observasjonsperiode);
+        final List<Underlag> periodiserte = new ArrayList<>();
+        final List<List<String>> forventa = new ArrayList<>();
+        for (int forsoek = 0; forsoek < 50; forsoek++) {
+            final List<GenerellTidsperiode> perioder = tilfeldigePerioder(random, 1 + random.nextInt(20));
+            periodiserte.add(factory.nullstill().addPerioder(perioder).periodiser());
+            forventa.add(beskriv(new UnderlagFactory(observasjonsperiode).addPerioder(perioder).periodiser()));
+        }
+        assertThat(periodiserte.stream().map(UnderlagFactoryTest::beskriv).collect(toList()))
+                .isEqualTo(forventa);
+    }
+
+    /**
+     * Verifiserer at fletting av fleire sorterte straumar med input-perioder gir samme underlag som om periodene
+     * vart lagt til usortert.
+     */
+    @Test
+    void skalFletteSammenSorterteStraumarAvInputperioder() {
+        final Random random = new Random(20240404L);
+        for (int forsoek = 0; forsoek < 100; forsoek++) {
+            final Observasjonsperiode observasjonsperiode = observasjonsperiode("2001.01.01", "2010.12.31");
+            final List<GenerellTidsperiode> a = tilfeldigePerioder(random, random.nextInt(10));
+            final List<GenerellTidsperiode> b = tilfeldigePerioder(random, random.nextInt(10));
+            final List<GenerellTidsperiode> c = tilfeldigePerioder(random, random.nextInt(10));
+
+            final Underlag forventa = new UnderlagFactory(observasjonsperiode)
+                    .addPerioder(a)
+                    .addPerioder(b)
+                    .addPerioder(c)
+                    .periodiser();
+            final Underlag fletta = new UnderlagFactory(observasjonsperiode)
+                    .addSortertePerioder(
+                            a.stream().sorted(Comparator.comparing(GenerellTidsperiode::fraOgMed)),
+                            b.stream().sorted(Comparator.comparing(GenerellTidsperiode::fraOgMed)),
+                            c.stream().sorted(Comparator.comparing(GenerellTidsperiode::fraOgMed))
+                    )
+                    .periodiser();
+
+            assertThat(beskriv(fletta))
+                    .as("fletting av %s, %s og %s", a, b, c)
+                    .isEqualTo(beskriv(forventa));
+        }
+    }
+
+    /**
+     * Verifiserer at flettinga feilar dersom ein av straumane ikkje er sortert på frå og med-dato.
+     */
+    @Test
+    void skalFeileVedFlettingAvUsortertStraum() {
+        assertThatCode(
+                () -> new UnderlagFactory()
+                        .addSortertePerioder(
+                                Stream.of(periode(dato("2000.01.01"), empty())),
+                                Stream.of(
+                                        periode(dato("2001.01.01"), of(dato("2001.12.31"))),
+                                        periode(dato("2000.06.01"), of(dato("2000.12.31")))
+                                )
+                        )
+        )
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("må vere sortert kronologisk");
+    }
+
+    /**
+     * Verifiserer at ingen input-perioder blir lagt til dersom flettinga feilar, og at alle straumane blir lukka
+     * både når flettinga feilar og når den lukkast.
+     */
+    @Test
+    void skalLukkeStraumaneOgIkkjeLeggeTilInputperioderVissFlettingaFeilar() {
+        final AtomicInteger lukka = new AtomicInteger();
+        final UnderlagFactory factory = new UnderlagFactory(observasjonsperiode("2000.01.01", "2001.12.31"));
+        assertThatCode(
+                () -> factory.addSortertePerioder(
+                        Stream.of(periode(dato("2000.01.01"), empty())).onClose(lukka::incrementAndGet),
+                        Stream.of(
+                                periode(dato("2001.01.01"), of(dato("2001.12.31"))),
+                                periode(dato("2000.06.01"), of(dato("2000.12.31")))
+                        ).onClose(lukka::incrementAndGet)
+                )
+        )
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(lukka).hasValue(2);
+        assertThat(
+                factory
+                        .periodiser()
+                        .stream()
+                        .flatMap(p -> p.koblingarAvType(GenerellTidsperiode.class))
+        )
+                .isEmpty();
+
+        factory.addSortertePerioder(
+                Stream.of(periode(dato("2000.01.01"), empty())).onClose(lukka::incrementAndGet)
+        );
+        assertThat(lukka).hasValue(3);
+        assertThat(factory.periodiser()).harPerioder(1);
+    }
+
+    /**
+     * Verifiserer at straumperiodisering av sorterte input-perioder gir samme underlagsperioder og koblingar som
+     * ei ordinær periodisering av dei same periodene.
+     */
+    @Test
+    void skalPeriodisereSomStraumLiktSomOrdinaerPeriodisering() {
+        final Random random = new Random(20240202L);
+        for (int forsoek = 0; forsoek < 200; forsoek++) {
+            final Observasjonsperiode observasjonsperiode = forsoek % 2 == 0
+                    ? observasjonsperiode("2001.01.01", "2010.12.31")
+                    : observasjonsperiode("2001.01.01", løpende());
+            final List<GenerellTidsperiode> perioder = tilfeldigePerioder(random, 1 + random.nextInt(20));
+            perioder.sort(Comparator.comparing(GenerellTidsperiode::fraOgMed));
+
+            final Underlag forventa = new UnderlagFactory(observasjonsperiode).addPerioder(perioder).periodiser();
+            final Underlag straum = new Underlag(
+                    new UnderlagFactory(observasjonsperiode).periodiserSomStraum(perioder.stream())
+            );
+
+            assertThat(beskriv(straum))
+                    .as("straumperiodisering av %s", perioder)
+                    .isEqualTo(beskriv(forventa));
+        }
+    }
+
+    /**
+     * Verifiserer at straumperiodiseringa kun les så mange input-perioder som den treng for å bygge
+     * underlagsperiodene som blir henta ut, slik at sjølv uendelege input-straumar kan periodiserast.
+     */
+    @Test
+    void skalKunLeseInputPeriodeneSomTrengsVedStraumperiodisering() {
+        final List<Underlagsperiode> perioder = new UnderlagFactory()
+                .periodiserSomStraum(
+                        Stream
+                                .iterate(dato("2000.01.01"), dato -> dato.plusMonths(1))
+                                .map(fraOgMed -> periode(fraOgMed, of(fraOgMed.plusMonths(2).minusDays(1))))
+                )
+                .limit(3)
+                .collect(toList());
+
+        assertThat(new Underlag(perioder.stream()))
+                .harPerioder(3)
+                .periode(atIndex(0), periode -> periode.harFraOgMed("2000.01.01").harTilOgMed("2000.01.31").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.hasSize(1)))
+                .periode(atIndex(1), periode -> periode.harFraOgMed("2000.02.01").harTilOgMed("2000.02.29").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.hasSize(2)))
+                .periode(atIndex(2), periode -> periode.harFraOgMed("2000.03.01").harTilOgMed("2000.03.31").harKoblingarAvType(GenerellTidsperiode.class, koblingar -> koblingar.hasSize(2)));
+    }
+
+    /**
+     * Verifiserer at straumperiodiseringa feilar dersom input-periodene ikkje er sortert på frå og med-dato.
+     */
+    @Test
+    void skalFeileVedStraumperiodiseringAvUsortertePerioder() {
+        assertThatCode(
+                () -> new UnderlagFactory()
+                        .periodiserSomStraum(
+                                Stream.of(
+                                        periode(dato("2001.01.01"), of(dato("2001.12.31"))),
+                                        periode(dato("2000.01.01"), of(dato("2000.12.31")))
+                                )
+                        )
+                        .count()
+        )
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("må vere sortert kronologisk");
+    }
+
+    /**
+     * Verifiserer at underlagsperioder som ikkje blir påverka av endringane ved reperiodisering, blir gjenbrukt
+     * med annotasjonane sine, medan nye underlagsperioder blir sendt til annoteringa.
+     */
+    @Test
+    void skalGjenbrukeUpaaverkaUnderlagsperioderVedReperiodisering() {
+        final UnderlagFactory factory = new UnderlagFactory(observasjonsperiode("2001.01.01", "2001.12.31"))
+                .addPerioder(
+                        periode(dato("2001.01.01"), of(dato("2001.03.31"))),
+                        periode(dato("2001.04.01"), of(dato("2001.06.30"))),
+                        periode(dato("2001.07.01"), of(dato("2001.09.30"))),
+                        periode(dato("2001.10.01"), of(dato("2001.12.31")))
+                );
+        final Underlag forrige = factory.periodiser();
+        forrige.forEach(periode -> periode.annoter(String.class, "gammal"));
+
+        final Underlag reperiodisert = factory.reperiodiser(
+                forrige,
+                List.of(periode(dato("2001.11.15"), of(dato("2001.11.30")))),
+                List.of(),
+                periode -> periode.annoter(String.class, "ny")
+        );
+
+        assertThat(reperiodisert)
+                .harPerioder(6)
+                .periode(atIndex(0), periode -> periode.harAnnotasjon(String.class, "gammal"))
+                .periode(atIndex(1), periode -> periode.harAnnotasjon(String.class, "gammal"))
+                .periode(atIndex(2), periode -> periode.harAnnotasjon(String.class, "gammal"))
+                .periode(atIndex(3), periode -> periode.harFraOgMed("2001.10.01").harTilOgMed("2001.11.14").harAnnotasjon(String.class, "ny"))
+                .periode(atIndex(4), periode -> periode.harFraOgMed("2001.11.15").harTilOgMed("2001.11.30").harAnnotasjon(String.class, "ny"))
+                .periode(atIndex(5), periode -> periode.harFraOgMed("2001.12.01").harAnnotasjon(String.class, "ny"));
+        assertThat(reperiodisert.toList().get(0)).isSameAs(forrige.toList().get(0));
+        assertThat(reperiodisert.toList().get(1)).isSameAs(forrige.toList().get(1));
+        assertThat(reperiodisert.toList().get(2)).isSameAs(forrige.toList().get(2));
+    }
+
     /**
      * Verifiserer at dersom ingen av tidsperiodene som blir brukt som input til periodiseringa av underlag
      * ovarlappar observasjonsperioda så blir eit tom underlag generert, dvs det er ein normal
@@ -330,6 +736,24 @@ class UnderlagFactoryTest {
         ;
     }
 
+    /**
+     * Verifiserer at periodiseringa ikkje feilar når observasjonsperioda varer ut {@link LocalDate#MAX} og
+     * ei av input-periodene er løpande, sjølv om dagen etter observasjonsperiodas til og med-dato ikkje kan
+     * representerast som ein {@link LocalDate}.
+     */
+    @Test
+    void skalHandtereLoepandePerioderNaarObservasjonsperiodaVarerTilSisteMuligeDato() {
+        assertPeriodiser(
+                new Observasjonsperiode(LocalDate.MIN, LocalDate.MAX),
+                periode(dato("2004.02.29"), of(dato("2008.02.28"))),
+                periode(dato("2008.02.29"), empty())
+        )
+                .harPerioder(2)
+                .periode(atIndex(0), periode -> periode.harFraOgMed("2004.02.29").harTilOgMed("2008.02.28"))
+                .periode(atIndex(1), periode -> periode.harFraOgMed("2008.02.29").harTilOgMed(LocalDate.MAX))
+        ;
+    }
+
     /**
      * Verifiserer at underlagets første underlagsperiode blir avgrensa til første dag i observasjonsperioda
      * viss den kronologisk første tidsperioda brukt for å bygge opp underlaget, startar før observasjonsperiodas
@@ -456,6 +880,28 @@ class UnderlagFactoryTest {
                 .map(dato -> new GenerellTidsperiode(dato, of(dato)));
     }
 
+    private List<GenerellTidsperiode> tilfeldigePerioder(final Random random, final int antall) {
+        return range(0, antall)
+                .mapToObj(i -> dato("2000.01.01").plusDays(random.nextInt(12 * 365)))
+                .map(fraOgMed -> periode(
+                        fraOgMed,
+                        random.nextInt(5) == 0 ? empty() : of(fraOgMed.plusDays(random.nextInt(3 * 365)))
+                ))
+                .collect(toList());
+    }
+
+    private static List<String> beskriv(final Underlag underlag) {
+        return underlag
+                .stream()
+                .map(periode -> periode + " " + periode
+                        .koblingarAvType(GenerellTidsperiode.class)
+                        .map(GenerellTidsperiode::toString)
+                        .sorted()
+                        .collect(toList())
+                )
+                .collect(toList());
+    }
+
     private Optional<String> løpende() {
         return Optional.empty();
     }
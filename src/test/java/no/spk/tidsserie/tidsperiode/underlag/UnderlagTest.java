@@ -6,11 +6,23 @@ import static java.util.stream.Collectors.toList;
 import static no.spk.tidsserie.tidsperiode.Datoar.dato;
 import static no.spk.tidsserie.tidsperiode.underlag.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.atIndex;
 import static org.assertj.core.api.Assertions.offset;
 
+import java.time.Month;
+import java.time.YearMonth;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import no.spk.tidsserie.tidsperiode.Aarstall;
+import no.spk.tidsserie.tidsperiode.GenerellTidsperiode;
 
 import org.junit.jupiter.api.Test;
 
@@ -270,6 +282,359 @@ class UnderlagTest {
         assertThat(eitTomtUnderlag().last()).isEqualTo(Optional.empty());
     }
 
+    /**
+     * Verifiserer at {@link Underlag#slaaSamanLikePerioder()} kun slår saman nabo-underlagsperioder som har både like
+     * koblingar og like annotasjonar, og at underlaget beheld annotasjonane sine.
+     */
+    @Test
+    void skalKunSlaaSamanNaboperioderMedLikeKoblingarOgAnnotasjonar() {
+        final GenerellTidsperiode kobling = new GenerellTidsperiode(dato("2000.01.01"), empty());
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.01.31")).medKobling(kobling).med(1),
+                periode().fraOgMed(dato("2000.02.01")).tilOgMed(dato("2000.02.29")).medKobling(kobling).med(1),
+                periode().fraOgMed(dato("2000.03.01")).tilOgMed(dato("2000.03.31")).medKobling(kobling).med(2),
+                periode().fraOgMed(dato("2000.04.01")).tilOgMed(dato("2000.04.30")).med(2),
+                periode().fraOgMed(dato("2000.05.01")).tilOgMed(dato("2000.05.31")).med(2)
+        );
+        underlag.annoter(String.class, "underlag");
+
+        final Underlag samanslaatt = underlag.slaaSamanLikePerioder();
+
+        assertThat(samanslaatt.annotasjonFor(String.class)).isEqualTo("underlag");
+        assertThat(samanslaatt)
+                .harPerioder(3)
+                .periode(atIndex(0), periode -> periode.harFraOgMed("2000.01.01").harTilOgMed("2000.02.29").harAnnotasjon(Integer.class, 1))
+                .periode(atIndex(1), periode -> periode.harFraOgMed("2000.03.01").harTilOgMed("2000.03.31").harAnnotasjon(Integer.class, 2))
+                .periode(atIndex(2), periode -> periode.harFraOgMed("2000.04.01").harTilOgMed("2000.05.31").harAnnotasjon(Integer.class, 2));
+        assertThat(samanslaatt.toList().get(0).koblingarAvType(GenerellTidsperiode.class)).containsOnly(kobling);
+        assertThat(samanslaatt.toList().get(1)).isSameAs(underlag.toList().get(2));
+    }
+
+    /**
+     * Verifiserer at {@link Underlag#periodeFor(java.time.LocalDate)} finn underlagsperioda som inneheld datoen,
+     * også for første og siste dag i underlagsperiodene, og ingen underlagsperiode for datoar utanfor underlaget.
+     */
+    @Test
+    void skalSlaaOppUnderlagsperiodaSomInneheldDatoen() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.01.31")),
+                periode().fraOgMed(dato("2000.02.01")).tilOgMed(dato("2000.06.30")),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.12.31"))
+        );
+        assertThat(underlag.periodeFor(dato("2000.01.01"))).contains(underlag.toList().get(0));
+        assertThat(underlag.periodeFor(dato("2000.01.31"))).contains(underlag.toList().get(0));
+        assertThat(underlag.periodeFor(dato("2000.02.01"))).contains(underlag.toList().get(1));
+        assertThat(underlag.periodeFor(dato("2000.04.15"))).contains(underlag.toList().get(1));
+        assertThat(underlag.periodeFor(dato("2000.12.31"))).contains(underlag.toList().get(2));
+        assertThat(underlag.periodeFor(dato("1999.12.31"))).isEmpty();
+        assertThat(underlag.periodeFor(dato("2001.01.01"))).isEmpty();
+        assertThat(eitTomtUnderlag().periodeFor(dato("2000.01.01"))).isEmpty();
+    }
+
+    /**
+     * Verifiserer at {@link Underlag#perioderMellom(java.time.LocalDate, java.time.LocalDate)} returnerer alle og kun
+     * underlagsperiodene som heilt eller delvis overlappar tidsrommet.
+     */
+    @Test
+    void skalReturnereUnderlagsperiodeneSomOverlapparTidsrommet() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.01.31")),
+                periode().fraOgMed(dato("2000.02.01")).tilOgMed(dato("2000.06.30")),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.12.31"))
+        );
+        final List<Underlagsperiode> perioder = underlag.toList();
+        assertThat(underlag.perioderMellom(dato("2000.01.31"), dato("2000.07.01"))).containsExactlyElementsOf(perioder);
+        assertThat(underlag.perioderMellom(dato("2000.02.01"), dato("2000.06.30"))).containsExactly(perioder.get(1));
+        assertThat(underlag.perioderMellom(dato("1999.01.01"), dato("2000.01.01"))).containsExactly(perioder.get(0));
+        assertThat(underlag.perioderMellom(dato("2000.12.31"), dato("2010.01.01"))).containsExactly(perioder.get(2));
+        assertThat(underlag.perioderMellom(dato("2001.01.01"), dato("2010.01.01"))).isEmpty();
+        assertThat(underlag.foersteIndexFraOgMed(dato("2000.03.01"))).isEqualTo(1);
+        assertThat(underlag.sisteIndexTilOgMed(dato("2000.03.01"))).isEqualTo(1);
+        assertThat(underlag.foersteIndexFraOgMed(dato("2001.01.01"))).isEqualTo(3);
+        assertThat(underlag.sisteIndexTilOgMed(dato("1999.12.31"))).isEqualTo(-1);
+        assertThatCode(() -> underlag.perioderMellom(dato("2000.02.01"), dato("2000.01.31")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Verifiserer at {@link Underlag#restrict(java.time.LocalDate, java.time.LocalDate)} kun inneheld
+     * underlagsperiodene som overlappar tidsrommet, utan å avkorte dei, og at gjentatte avgrensingar gir dei
+     * samme underlagsperiodene og annotasjonane som det opprinnelige underlaget.
+     */
+    @Test
+    void skalAvgrenseUnderlagTilUnderlagsperiodeneSomOverlapparTidsrommet() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.01.31")).med(1),
+                periode().fraOgMed(dato("2000.02.01")).tilOgMed(dato("2000.06.30")).med(2),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.09.30")).med(2),
+                periode().fraOgMed(dato("2000.10.01")).tilOgMed(dato("2000.12.31")).med(3)
+        );
+        underlag.annoter(String.class, "underlag");
+
+        final Underlag avgrensa = underlag
+                .restrict(dato("2000.03.01"), dato("2000.12.01"))
+                .restrict(p -> p.annotasjonFor(Integer.class) == 2);
+
+        assertThat(avgrensa.annotasjonFor(String.class)).isEqualTo("underlag");
+        assertThat(avgrensa.toList()).containsExactlyElementsOf(underlag.toList().subList(1, 3));
+        assertThat(avgrensa)
+                .harPerioder(2)
+                .harFraOgMed("2000.02.01")
+                .harTilOgMed("2000.09.30");
+        assertThat(avgrensa.restrict(p -> false).toList()).isEmpty();
+    }
+
+    /**
+     * Verifiserer at spliteratoren til underlaget har kjent storleik, og at den blir splitta i like store
+     * halvdelar.
+     */
+    @Test
+    void skalSplitteUnderlagsperiodeneILikeStoreHalvdelar() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.03.31")),
+                periode().fraOgMed(dato("2000.04.01")).tilOgMed(dato("2000.06.30")),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.09.30")),
+                periode().fraOgMed(dato("2000.10.01")).tilOgMed(dato("2000.12.31"))
+        );
+
+        final Spliterator<Underlagsperiode> andre = underlag.spliterator();
+        assertThat(andre.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)).isTrue();
+        assertThat(andre.hasCharacteristics(Spliterator.ORDERED | Spliterator.IMMUTABLE)).isTrue();
+
+        final Spliterator<Underlagsperiode> foerste = andre.trySplit();
+        assertThat(foerste.estimateSize()).isEqualTo(2);
+        assertThat(andre.estimateSize()).isEqualTo(2);
+        assertThat(StreamSupport.stream(andre, false).toList()).containsExactlyElementsOf(underlag.toList().subList(2, 4));
+
+        assertThat(underlag.parallelStream().toList()).containsExactlyElementsOf(underlag.toList());
+    }
+
+    /**
+     * Verifiserer at parallell beregning gir samme resultat, i samme rekkefølge, som sekvensiell beregning.
+     */
+    @Test
+    void skalBeregneAlleUnderlagsperiodeneParallelt() {
+        final Underlag underlag = new Underlag(
+                IntStream.range(0, 1000)
+                        .mapToObj(i -> new Underlagsperiode(dato("2000.01.01").plusDays(i), dato("2000.01.01").plusDays(i)))
+        );
+        underlag.forEach(p -> p.annoter(Dagnummer.class, new Dagnummer()));
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThat(underlag.beregnParallelt(Dagnummer.class, pool))
+                    .containsExactlyElementsOf(
+                            underlag.stream().map(p -> p.beregn(Dagnummer.class)).collect(toList())
+                    );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Verifiserer at aggregering pr år og pr måned vektar resultatet til kvar underlagsperiode med antall dagar
+     * den overlappar året eller måneden, også når underlagsperioda strekker seg over fleire år eller månedar.
+     */
+    @Test
+    void skalAggregereDagvektaResultatPrAarOgPrMaaned() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.01.10")).med(Dagsats.class, new Dagsats(366d)),
+                periode().fraOgMed(dato("2000.01.11")).tilOgMed(dato("2001.01.31")).med(Dagsats.class, new Dagsats(732d))
+        );
+
+        final Map<Aarstall, Double> perAar = underlag.aggregerPerAar(Dagsats.class, 0d, Double::sum);
+        assertThat(perAar.keySet()).containsExactly(new Aarstall(2000), new Aarstall(2001));
+        assertThat(perAar.get(new Aarstall(2000))).isCloseTo(10 + 356 * 2, offset(0.0001));
+        assertThat(perAar.get(new Aarstall(2001))).isCloseTo(732d * 31 / 365, offset(0.0001));
+
+        final Map<YearMonth, Double> perMaaned = underlag.aggregerPerMaaned(Dagsats.class, 0d, Math::max);
+        assertThat(perMaaned).hasSize(13);
+        assertThat(perMaaned.get(YearMonth.of(2000, Month.JANUARY))).isCloseTo(732d * 21 / 31, offset(0.0001));
+        assertThat(perMaaned.get(YearMonth.of(2001, Month.JANUARY))).isCloseTo(732d, offset(0.0001));
+    }
+
+    /**
+     * Verifiserer at splitting pr år og pr måned kuttar underlagsperiodene ved årsskifta og månedsskifta, og at
+     * delane deler annotasjonane og koblingane til underlagsperioda dei er splitta frå inntil dei blir endra.
+     */
+    @Test
+    void skalSplitteUnderlagsperiodeneVedAarsskiftaOgMaanedsskifta() {
+        final GenerellTidsperiode kobling = new GenerellTidsperiode(dato("1990.01.01"), empty());
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.15")).tilOgMed(dato("2000.03.10")).med(1).medKobling(kobling),
+                periode().fraOgMed(dato("2000.03.11")).tilOgMed(dato("2001.01.31")).med(2)
+        );
+        underlag.annoter(String.class, "underlag");
+
+        final Underlag perAar = underlag.splittPerAar();
+        assertThat(perAar.annotasjonFor(String.class)).isEqualTo("underlag");
+        assertThat(perAar)
+                .harPerioder(3)
+                .periode(atIndex(0), p -> p.harFraOgMed("2000.01.15").harTilOgMed("2000.03.10"))
+                .periode(atIndex(1), p -> p.harFraOgMed("2000.03.11").harTilOgMed("2000.12.31").harAnnotasjon(Integer.class, 2))
+                .periode(atIndex(2), p -> p.harFraOgMed("2001.01.01").harTilOgMed("2001.01.31").harAnnotasjon(Integer.class, 2));
+        assertThat(perAar.toList().get(0)).isSameAs(underlag.toList().get(0));
+
+        final Underlag perMaaned = underlag.splittPerMaaned();
+        assertThat(perMaaned)
+                .harPerioder(14)
+                .harFraOgMed("2000.01.15")
+                .harTilOgMed("2001.01.31")
+                .periode(atIndex(2), p -> p.harFraOgMed("2000.03.01").harTilOgMed("2000.03.10").harAnnotasjon(Integer.class, 1))
+                .periode(atIndex(3), p -> p.harFraOgMed("2000.03.11").harTilOgMed("2000.03.31"));
+        assertThat(perMaaned.toList().get(1).koblingAvType(GenerellTidsperiode.class)).isEqualTo(of(kobling));
+
+        perMaaned.toList().get(0).annoter(Integer.class, 3);
+        assertThat(perMaaned.toList().get(0).annotasjonFor(Integer.class)).isEqualTo(3);
+        assertThat(perMaaned.toList().get(1).annotasjonFor(Integer.class)).isEqualTo(1);
+        assertThat(underlag.toList().get(0).annotasjonFor(Integer.class)).isEqualTo(1);
+    }
+
+    /**
+     * Verifiserer at ei løpande siste underlagsperiode blir splitta ved slutten av året den startar i, og at
+     * resten av perioda framleis er løpande.
+     */
+    @Test
+    void skalSplitteLoepandeSisteUnderlagsperiodeVedSluttenAvAaretDenStartarI() {
+        final Underlag underlag = new Underlag(
+                Stream.of(new Underlagsperiode(dato("2000.05.01"), empty()))
+        );
+        final List<Underlagsperiode> perioder = underlag.splittPerAar().toList();
+        assertThat(perioder).hasSize(2);
+        assertThat(perioder.get(0).tilOgMed()).isEqualTo(of(dato("2000.12.31")));
+        assertThat(perioder.get(1).fraOgMed()).isEqualTo(dato("2001.01.01"));
+        assertThat(perioder.get(1).tilOgMed()).isEqualTo(empty());
+    }
+
+    /**
+     * Verifiserer at samanlikning av to underlag kun returnerer tidsromma der underlagsperiodene har ulike datoar,
+     * koblingar eller annotasjonar, eller der kun eitt av underlaga har underlagsperioder, og at tilstøytande
+     * endringar blir slått saman.
+     */
+    @Test
+    void skalKunReturnereTidsrommaDerUnderlagaErUlike() {
+        final GenerellTidsperiode kobling = new GenerellTidsperiode(dato("1990.01.01"), empty());
+        final Underlag forrige = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.03.31")).med(1).medKobling(kobling),
+                periode().fraOgMed(dato("2000.04.01")).tilOgMed(dato("2000.06.30")).med(2),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.09.30")).med(3),
+                periode().fraOgMed(dato("2000.10.01")).tilOgMed(dato("2000.12.31")).med(4)
+        );
+        final Underlag gjeldande = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.03.31")).med(1)
+                        .medKobling(new GenerellTidsperiode(dato("1990.01.01"), empty())),
+                periode().fraOgMed(dato("2000.04.01")).tilOgMed(dato("2000.05.31")).med(2),
+                periode().fraOgMed(dato("2000.06.01")).tilOgMed(dato("2000.06.30")).med(2),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.09.30")).med(5),
+                periode().fraOgMed(dato("2000.10.01")).tilOgMed(dato("2000.12.31")).med(4),
+                periode().fraOgMed(dato("2001.01.01")).tilOgMed(dato("2001.01.31")).med(4)
+        );
+
+        assertThat(gjeldande.endringarFra(forrige))
+                .containsExactly(
+                        new GenerellTidsperiode(dato("2000.04.01"), of(dato("2000.09.30"))),
+                        new GenerellTidsperiode(dato("2001.01.01"), of(dato("2001.01.31")))
+                );
+        assertThat(forrige.endringarFra(forrige)).isEmpty();
+        assertThat(eitTomtUnderlag().endringarFra(forrige))
+                .containsExactly(new GenerellTidsperiode(dato("2000.01.01"), of(dato("2000.12.31"))));
+    }
+
+    /**
+     * Verifiserer at like annotasjonsverdiar blir erstatta med éin kanonisk instans for annotasjonstypane som
+     * interneringa er aktivert for, både for eksisterande annotasjonar og annotasjonar som blir lagt til seinare,
+     * også på underlagsperioder splitta frå underlaget.
+     */
+    @Test
+    void skalInternereLikeAnnotasjonsverdiarForAktiverteAnnotasjonstypar() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.12.31")).med(new String("A")),
+                periode().fraOgMed(dato("2001.01.01")).tilOgMed(dato("2001.12.31")).med(new String("A"))
+        );
+        final Internering internering = new Internering().interner(String.class);
+        underlag.interner(internering);
+
+        final List<Underlagsperiode> perioder = underlag.toList();
+        assertThat(perioder.get(1).annotasjonFor(String.class))
+                .isSameAs(perioder.get(0).annotasjonFor(String.class));
+
+        final Underlagsperiode splitta = underlag.splittPerMaaned().toList().get(13);
+        splitta.annoter(String.class, new String("A"));
+        splitta.annoter(Integer.class, 1000);
+        assertThat(splitta.annotasjonFor(String.class)).isSameAs(perioder.get(0).annotasjonFor(String.class));
+        assertThat(internering.internerer(Integer.class)).isFalse();
+    }
+
+    /**
+     * Verifiserer at annotasjonsverdiar som blir kopiert frå eit underlag utan internering, blir internert dersom
+     * underlaget dei blir kopiert til har internering, og at kjelda ikkje blir påverka av det.
+     */
+    @Test
+    void skalInternereAnnotasjonsverdiarSomBlirKopiertFraEitUnderlagUtanInternering() {
+        final Internering internering = new Internering().interner(String.class);
+        final Underlag internert = eitTomtUnderlag();
+        internert.interner(internering);
+        internert.annoter(String.class, new String("A"));
+
+        final Underlag kilde = eitTomtUnderlag().annoter(String.class, new String("A"));
+        final Underlag kopi = eitTomtUnderlag();
+        kopi.interner(internering);
+        kopi.annoterFra(kilde);
+
+        assertThat(kopi.annotasjonFor(String.class)).isSameAs(internert.annotasjonFor(String.class));
+        assertThat(kilde.annotasjonFor(String.class)).isNotSameAs(internert.annotasjonFor(String.class));
+    }
+
+    /**
+     * Verifiserer at underlagsperiodene blir annotert med verdien frå tidsperioda i tidslinja som dei overlappar,
+     * og at underlagsperioder som ikkje overlappar nokon tidsperiode i tidslinja, ikkje blir annotert.
+     */
+    @Test
+    void skalAnnotereUnderlagsperiodeneFraOverlappandeTidsperiodeITidslinja() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.03.31")),
+                periode().fraOgMed(dato("2000.04.01")).tilOgMed(dato("2000.06.30")),
+                periode().fraOgMed(dato("2000.07.01")).tilOgMed(dato("2000.09.30")),
+                periode().fraOgMed(dato("2000.10.01")).tilOgMed(dato("2000.12.31"))
+        );
+        final List<GenerellTidsperiode> tidslinje = List.of(
+                new GenerellTidsperiode(dato("1990.01.01"), of(dato("2000.03.31"))),
+                new GenerellTidsperiode(dato("2000.04.01"), of(dato("2000.06.30"))),
+                new GenerellTidsperiode(dato("2000.10.01"), empty())
+        );
+
+        underlag.annoter(Integer.class, tidslinje, periode -> periode.fraOgMed().getYear());
+
+        final List<Underlagsperiode> perioder = underlag.toList();
+        assertThat(perioder.get(0).valgfriAnnotasjonFor(Integer.class)).contains(1990);
+        assertThat(perioder.get(1).valgfriAnnotasjonFor(Integer.class)).contains(2000);
+        assertThat(perioder.get(2).valgfriAnnotasjonFor(Integer.class)).isEmpty();
+        assertThat(perioder.get(3).valgfriAnnotasjonFor(Integer.class)).contains(2000);
+    }
+
+    /**
+     * Verifiserer at annoteringa frå ei tidslinje feilar dersom ei underlagsperiode overlappar meir enn ei
+     * tidsperiode i tidslinja, eller tidslinja ikkje er sortert, og at ingen av underlagsperiodene då blir
+     * annotert.
+     */
+    @Test
+    void skalFeileVissUnderlagsperiodeOverlapparMeirEnnEiTidsperiodeITidslinja() {
+        final Underlag underlag = underlag(
+                periode().fraOgMed(dato("1999.01.01")).tilOgMed(dato("1999.12.31")),
+                periode().fraOgMed(dato("2000.01.01")).tilOgMed(dato("2000.12.31"))
+        );
+        final GenerellTidsperiode a = new GenerellTidsperiode(dato("1999.01.01"), of(dato("2000.05.31")));
+        final GenerellTidsperiode b = new GenerellTidsperiode(dato("2000.06.01"), empty());
+
+        assertThatCode(() -> underlag.annoter(Integer.class, List.of(a, b), p -> 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("overlappar meir enn ei tidsperiode");
+        assertThat(underlag.toList().get(0).valgfriAnnotasjonFor(Integer.class)).isEmpty();
+        assertThatCode(() -> underlag.annoter(Integer.class, List.of(b, a), p -> 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("sortert");
+    }
+
     private UnderlagsperiodeBuilder periode() {
         return new UnderlagsperiodeBuilder();
     }
@@ -281,4 +646,24 @@ class UnderlagTest {
     private static Underlag eitTomtUnderlag() {
         return new Underlag(Stream.empty());
     }
-}
\ No newline at end of file
+
+    private static class Dagnummer implements BeregningsRegel<Integer> {
+        @Override
+        public Integer beregn(final Beregningsperiode<?> periode) {
+            return periode.fraOgMed().getDayOfYear();
+        }
+    }
+
+    private static class Dagsats implements BeregningsRegel<Double> {
+        private final double verdi;
+
+        Dagsats(final double verdi) {
+            this.verdi = verdi;
+        }
+
+        @Override
+        public Double beregn(final Beregningsperiode<?> periode) {
+            return verdi;
+        }
+    }
+}
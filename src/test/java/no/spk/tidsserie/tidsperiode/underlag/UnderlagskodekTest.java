@@ -0,0 +1,161 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.util.Optional.empty;
+import static no.spk.tidsserie.tidsperiode.Datoar.dato;
+import static no.spk.tidsserie.tidsperiode.underlag.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.atIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Month;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.Aar;
+import no.spk.tidsserie.tidsperiode.Aarstall;
+import no.spk.tidsserie.tidsperiode.Maaned;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Enheitstestar for {@link Underlagskodek}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class UnderlagskodekTest {
+    private final Underlagskodek kodek = new Underlagskodek();
+
+    /**
+     * Verifiserer at eit underlag blir lest tilbake med samme underlagsperioder, koblingar og annotasjonar som det
+     * blei skrive med, og at koblingar som er delt mellom underlagsperiodene, blir lest tilbake som éin instans.
+     */
+    @Test
+    void skalLeseTilbakeUnderlagetSomBleiSkrive() throws IOException {
+        final Aar aar = new Aar(new Aarstall(2001));
+        final Underlag underlag = new UnderlagFactory(
+                new Observasjonsperiode(dato("2001.01.01"), dato("2001.12.31"))
+        )
+                .addPerioder(aar)
+                .addPerioder(aar.maaneder())
+                .periodiser();
+        underlag.annoter(String.class, "underlag");
+        underlag.forEach(p -> p.annoter(Integer.class, p.fraOgMed().getMonthValue()));
+
+        final byte[] bytes = skriv(ut -> kodek.skriv(underlag, ut));
+        final Underlag lest = kodek.lesUnderlag(les(bytes));
+
+        assertThat(lest.annotasjonFor(String.class)).isEqualTo("underlag");
+        assertThat(lest)
+                .harPerioder(12)
+                .harFraOgMed("2001.01.01")
+                .harTilOgMed("2001.12.31")
+                .periode(
+                        atIndex(4),
+                        periode -> periode
+                                .harFraOgMed("2001.05.01")
+                                .harTilOgMed("2001.05.31")
+                                .harAnnotasjon(Integer.class, 5)
+                                .harKoblingAvType(
+                                        Maaned.class,
+                                        maaned -> assertThat(maaned.toMonth()).isEqualTo(Month.MAY)
+                                )
+                );
+        assertThat(lest.toList().get(0).koblingAvType(Aar.class).get())
+                .isSameAs(lest.toList().get(11).koblingAvType(Aar.class).get());
+        assertThat(bytes.length)
+                .as("antall bytes for eit underlag med 12 underlagsperioder")
+                .isLessThan(400);
+    }
+
+    /**
+     * Verifiserer at løpande observasjonsperioder og underlagsperioder blir lest tilbake som løpande.
+     */
+    @Test
+    void skalLeseTilbakeLoepandePerioder() throws IOException {
+        final Observasjonsperiode observasjonsperiode = new Observasjonsperiode(dato("1917.01.01"), empty());
+        assertThat(kodek.lesObservasjonsperiode(les(skriv(ut -> kodek.skriv(observasjonsperiode, ut)))))
+                .isEqualTo(observasjonsperiode);
+
+        final Underlagsperiode periode = new Underlagsperiode(dato("2000.01.01"), empty());
+        final Underlagsperiode lest = kodek.lesUnderlagsperiode(les(skriv(ut -> kodek.skriv(periode, ut))));
+        assertThat(lest.fraOgMed()).isEqualTo(dato("2000.01.01"));
+        assertThat(lest.tilOgMed()).isEqualTo(empty());
+    }
+
+    /**
+     * Verifiserer at annotasjonar av typar utan registrert verdikodek blir avvist ved skriving, og at dei kan
+     * skrivast og lesast når ein kodek er registrert.
+     */
+    @Test
+    void skalKreveRegistrertVerdikodekForAnnotasjonstypane() throws IOException {
+        final Underlag underlag = new Underlag(Stream.of(new Underlagsperiode(dato("2000.01.01"), dato("2000.12.31"))));
+        underlag.annoter(Stillingsprosent.class, new Stillingsprosent(50));
+
+        assertThatCode(() -> skriv(ut -> kodek.skriv(underlag, ut)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(Stillingsprosent.class.getName());
+
+        kodek.registrer(Stillingsprosent.class, new Verdikodek<>() {
+            @Override
+            public void skriv(final Stillingsprosent verdi, final DataOutput ut) throws IOException {
+                ut.writeByte(verdi.prosent);
+            }
+
+            @Override
+            public Stillingsprosent les(final DataInput inn) throws IOException {
+                return new Stillingsprosent(inn.readByte());
+            }
+        });
+        final Underlag lest = kodek.lesUnderlag(les(skriv(ut -> kodek.skriv(underlag, ut))));
+        assertThat(lest.annotasjonFor(Stillingsprosent.class).prosent).isEqualTo(50);
+
+        assertThatCode(() -> new Underlagskodek().lesUnderlag(les(skriv(ut -> kodek.skriv(underlag, ut)))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining(Stillingsprosent.class.getName());
+    }
+
+    /**
+     * Verifiserer at lesing feilar dersom straumen ikkje inneheld eit objekt av forventa type.
+     */
+    @Test
+    void skalFeileVedLesingAvUkjentFormat() throws IOException {
+        final byte[] observasjonsperiode = skriv(
+                ut -> kodek.skriv(new Observasjonsperiode(dato("2000.01.01"), dato("2000.12.31")), ut)
+        );
+        assertThatCode(() -> kodek.lesUnderlag(les(observasjonsperiode)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("objekttype");
+        assertThatCode(() -> kodek.lesUnderlag(les(new byte[]{1, 2, 3, 4, 5, 6})))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Underlagskodek");
+    }
+
+    private static byte[] skriv(final Skriving skriving) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream ut = new DataOutputStream(bytes)) {
+            skriving.skriv(ut);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInput les(final byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private interface Skriving {
+        void skriv(DataOutput ut) throws IOException;
+    }
+
+    private static class Stillingsprosent {
+        private final int prosent;
+
+        Stillingsprosent(final int prosent) {
+            this.prosent = prosent;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static no.spk.tidsserie.tidsperiode.Datoar.dato;
+import static no.spk.tidsserie.tidsperiode.underlag.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import no.spk.tidsserie.tidsperiode.Aar;
+import no.spk.tidsserie.tidsperiode.Aarstall;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Enheitstestar for {@link Underlagslager}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class UnderlagslagerTest {
+    @TempDir
+    Path katalog;
+
+    /**
+     * Verifiserer at underlag som er lagt til i lageret, kan hentast ut igjen etter at lageret er lukka og opna på
+     * nytt, også når underlaga er fordelt over fleire blokker i datafila.
+     */
+    @Test
+    void skalHenteUnderlagEtterAtLageretErOpnaPaaNytt() throws IOException {
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek(), 1024)) {
+            for (long noekkel = 1; noekkel <= 20; noekkel++) {
+                lager.leggTil(noekkel, underlag(2000 + (int) noekkel));
+            }
+        }
+
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek(), 1024)) {
+            assertThat(lager.size()).isEqualTo(20);
+            assertThat(lager.inneheld(21)).isFalse();
+            assertThat(lager.hent(21)).isEmpty();
+            assertThat(lager.hent(7).get())
+                    .harPerioder(12)
+                    .harFraOgMed("2007.01.01")
+                    .harTilOgMed("2007.12.31");
+
+            lager.leggTil(21, underlag(2021));
+            assertThat(lager.hent(21).get()).harFraOgMed("2021.01.01");
+            assertThat(lager.hent(20).get()).harFraOgMed("2020.01.01");
+        }
+    }
+
+    /**
+     * Verifiserer at eit underlag som blir lagt til med ein nøkkel som allereie er i bruk, erstattar det tidligare
+     * underlaget for nøkkelen.
+     */
+    @Test
+    void skalHenteSistLagtTilUnderlagForNoekkelen() throws IOException {
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek())) {
+            lager.leggTil(Long.MIN_VALUE, underlag(2000));
+            lager.leggTil(Long.MIN_VALUE, underlag(2001));
+
+            assertThat(lager.size()).isEqualTo(1);
+            assertThat(lager.hent(Long.MIN_VALUE).get()).harFraOgMed("2001.01.01");
+        }
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek())) {
+            assertThat(lager.hent(Long.MIN_VALUE).get()).harFraOgMed("2001.01.01");
+        }
+    }
+
+    /**
+     * Verifiserer at lageret ikkje kan opnast dersom lengda til det siste underlaget i datafila er ugyldig, slik at
+     * neste underlag som blir lagt til ikkje skriv over eit underlag som indeksen peikar på.
+     */
+    @Test
+    void skalFeileVedOpningDersomLengdaTilSisteUnderlagErUgyldig() throws IOException {
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek(), 1024)) {
+            lager.leggTil(1, underlag(2001));
+        }
+        try (final FileChannel data = FileChannel.open(katalog.resolve("underlag.data"), WRITE)) {
+            data.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, -1), 0);
+        }
+
+        assertThatCode(() -> Underlagslager.opne(katalog, new Underlagskodek(), 1024))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Ugyldig lengde -1");
+    }
+
+    /**
+     * Verifiserer at underlag som ikkje får plass i ei blokk, blir avvist.
+     */
+    @Test
+    void skalAvviseUnderlagSomErStoerreEnnEiBlokk() throws IOException {
+        try (final Underlagslager lager = Underlagslager.opne(katalog, new Underlagskodek(), 16)) {
+            assertThatCode(() -> lager.leggTil(1, underlag(2000)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("blokkstorleiken");
+            assertThat(lager.inneheld(1)).isFalse();
+        }
+    }
+
+    private static Underlag underlag(final int aarstall) {
+        final Aar aar = new Aar(new Aarstall(aarstall));
+        final Underlag underlag = new UnderlagFactory(
+                new Observasjonsperiode(dato(aarstall + ".01.01"), dato(aarstall + ".12.31"))
+        )
+                .addPerioder(aar)
+                .addPerioder(aar.maaneder())
+                .periodiser();
+        underlag.forEach(p -> p.annoter(Integer.class, p.fraOgMed().getMonthValue()));
+        return underlag;
+    }
+}
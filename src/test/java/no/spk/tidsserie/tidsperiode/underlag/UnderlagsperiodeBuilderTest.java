@@ -102,6 +102,24 @@ class UnderlagsperiodeBuilderTest {
                 );
     }
 
+    /**
+     * Verifiserer at underlagsperioder bygd av builderen ikkje blir påverka av at builderen eller andre
+     * underlagsperioder bygd av den, blir annotert etterpå.
+     */
+    @Test
+    void skalIkkjeDeleAnnotasjonarMedByggdePerioderEtterEndring() {
+        final UnderlagsperiodeBuilder builder = builder().med(1);
+        final Underlagsperiode foerste = builder.bygg();
+        final Underlagsperiode andre = builder.bygg();
+
+        builder.med(2);
+        foerste.annoter(Integer.class, 3);
+
+        assertThat(builder.bygg()).harAnnotasjon(Integer.class, 2);
+        assertThat(foerste).harAnnotasjon(Integer.class, 3);
+        assertThat(andre).harAnnotasjon(Integer.class, 1);
+    }
+
     @Test
     void skalAnnoterePeriodaBasertPaaVerdiensType() {
         assertThat(
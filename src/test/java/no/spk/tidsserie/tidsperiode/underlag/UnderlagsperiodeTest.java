@@ -102,6 +102,44 @@ class UnderlagsperiodeTest {
         assertThat(periode.valgfriAnnotasjonFor(Integer.class).isPresent()).isFalse();
     }
 
+    /**
+     * Verifiserer at kopiar som deler annotasjonar med originalen, ikkje blir påverka når originalen eller ein
+     * annan kopi blir annotert etter kopieringa.
+     */
+    @Test
+    void skalIkkjePaavirkeKopiarVedAnnoteringEtterKopiering() {
+        final Underlagsperiode original = eiPeriode()
+                .annoter(String.class, "original")
+                .annoter(Integer.class, 1);
+        final Underlagsperiode kopi = original.kopierUtenKoblinger(dato("2000.01.01"), dato("2000.01.31"));
+        final Underlagsperiode kopiAvKopi = kopi.kopierUtenKoblinger(dato("2000.01.01"), dato("2000.01.15"));
+
+        kopi.annoter(Integer.class, 2);
+        original.annoter(Integer.class, empty());
+
+        assertThat(original.valgfriAnnotasjonFor(Integer.class)).isEmpty();
+        assertThat(kopi.annotasjonFor(Integer.class)).isEqualTo(2);
+        assertThat(kopiAvKopi.annotasjonFor(Integer.class)).isEqualTo(1);
+        assertThat(kopiAvKopi.annotasjonFor(String.class)).isEqualTo("original");
+    }
+
+    /**
+     * Verifiserer at ein annotasjon blir fjerna når perioda blir annotert med ein tom verdi for typen, og at
+     * perioda då blir rekna som lik ei periode som aldri har blitt annotert med typen.
+     */
+    @Test
+    void skalFjerneAnnotasjonVissVerdiErEinTomOptional() {
+        final Underlagsperiode periode = eiPeriode();
+        periode.annoter(String.class, "verdi");
+        periode.annoter(Integer.class, 1);
+        periode.annoter(Integer.class, empty());
+
+        assertThat(periode.valgfriAnnotasjonFor(Integer.class)).isEmpty();
+        assertThat(periode.annotasjonFor(String.class)).isEqualTo("verdi");
+        assertThat(periode.harLikeAnnotasjonar(eiPeriode().annoter(String.class, "verdi"))).isTrue();
+        assertThat(periode.harLikeAnnotasjonar(eiPeriode())).isFalse();
+    }
+
     /**
      * Verifiserer at {@link java.util.Optional} blir spesialhandtert ved registrering av annotasjonar,
      * ei perioda skal enten kunne ha ein verdi eller ikkje ha den (Optional&lt;Verdi&gt;), den skal ikkje kanskje
@@ -146,6 +184,28 @@ class UnderlagsperiodeTest {
         assertThat(periode.koblingAvType(GenerellTidsperiode.class)).isEqualTo(of(kobling));
     }
 
+    /**
+     * Verifiserer at koblingar blir identifisert via identitet, slik at samme instans kun blir kobla til éin gong
+     * medan like, men ulike instansar blir kobla til kvar for seg, og at samanlikninga av koblingane til to
+     * underlagsperioder likevel brukar {@link Object#equals(Object)}.
+     */
+    @Test
+    void skalIdentifisereKoblingarViaIdentitet() {
+        final Underlagsperiode periode = eiPeriode();
+        final GenerellTidsperiode kobling = new GenerellTidsperiode(periode.fraOgMed(), empty());
+        periode.kobleTil(kobling);
+        periode.kobleTil(kobling);
+        assertThat(periode.koblingarAvType(GenerellTidsperiode.class)).containsExactly(kobling);
+
+        final Underlagsperiode andre = eiPeriode();
+        andre.kobleTil(new GenerellTidsperiode(periode.fraOgMed(), empty()));
+        assertThat(periode.harLikeKoblingar(andre)).isTrue();
+
+        andre.kobleTil(new GenerellTidsperiode(periode.fraOgMed(), empty()));
+        assertThat(andre.koblingarAvType(GenerellTidsperiode.class)).hasSize(2);
+        assertThat(periode.harLikeKoblingar(andre)).isFalse();
+    }
+
     /**
      * Verifiserer at uthenting av periodekobling ikkje feilar når det ikkje eksisterer
      * ei tilkobla tidsperioda av den ønska typen.
@@ -0,0 +1,90 @@
+package no.spk.tidsserie.tidsperiode.underlag;
+
+import static no.spk.tidsserie.tidsperiode.Datoar.dato;
+import static no.spk.tidsserie.tidsperiode.underlag.Underlagsvalidering.Avvikstype.OVERLAPP;
+import static no.spk.tidsserie.tidsperiode.underlag.Underlagsvalidering.Avvikstype.TIDSGAP;
+import static no.spk.tidsserie.tidsperiode.underlag.Underlagsvalidering.Avvikstype.USORTERT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import no.spk.tidsserie.tidsperiode.underlag.Underlagsvalidering.Avvik;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Enheitstestar for {@link Underlagsvalidering}.
+ *
+ * @author Tarjei Skorgenes
+ */
+class UnderlagsvalideringTest {
+    /**
+     * Verifiserer at overlapp, tidsgap og feil rekkefølge blir rapportert som strukturerte avvik, med indexen til
+     * den siste av dei to underlagsperiodene som avviket gjeld.
+     */
+    @Test
+    void skalRapportereAlleAvvikaSomStrukturerteAvvik() {
+        final List<Underlagsperiode> perioder = List.of(
+                periode("2000.01.01", "2000.01.31"),
+                periode("2000.01.15", "2000.02.29"),
+                periode("2000.04.01", "2000.04.30"),
+                periode("2000.03.01", "2000.03.31")
+        );
+
+        final Underlagsvalidering validering = Underlagsvalidering.av(perioder);
+        assertThat(validering.erGyldig()).isFalse();
+        assertThat(validering.avvik())
+                .extracting(Avvik::type, Avvik::index)
+                .containsExactly(
+                        tuple(OVERLAPP, 1),
+                        tuple(TIDSGAP, 2),
+                        tuple(USORTERT, 3)
+                );
+        assertThat(validering.avvik(TIDSGAP).map(Avvik::forrige)).containsExactly(perioder.get(1));
+        assertThat(validering.avvik(TIDSGAP).map(Avvik::neste)).containsExactly(perioder.get(2));
+    }
+
+    /**
+     * Verifiserer at eit gyldig underlag ikkje har nokon avvik.
+     */
+    @Test
+    void skalIkkjeRapportereAvvikForGyldigeUnderlag() {
+        final Underlag underlag = new Underlag(
+                Stream.of(
+                        periode("2000.01.01", "2000.01.31"),
+                        periode("2000.02.01", "2000.02.29")
+                )
+        );
+        assertThat(underlag.valider().erGyldig()).isTrue();
+        assertThat(underlag.valider().feilmelding()).isEmpty();
+        assertThatCode(() -> underlag.valider().feilVissUgyldig()).doesNotThrowAnyException();
+        assertThat(new Underlag(Stream.empty()).valider().avvik()).isEmpty();
+    }
+
+    /**
+     * Verifiserer at valideringa ved konstruksjon feilar med {@link IllegalArgumentException} for ugyldige underlag
+     * når valideringa er slått på, uavhengig av om assertions er slått på.
+     */
+    @Test
+    void skalFeileMedIllegalArgumentExceptionNaarValideringaErSlaattPaa() {
+        assertThatCode(
+                () -> Underlag.validerVedKonstruksjon(
+                        List.of(
+                                periode("2000.01.01", "2000.04.30"),
+                                periode("2000.06.01", "2000.12.31")
+                        ),
+                        true
+                )
+        )
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("kan ikkje inneholde tidsgap")
+                .hasMessageContaining("31 dagar tidsgap mellom");
+    }
+
+    private static Underlagsperiode periode(final String fraOgMed, final String tilOgMed) {
+        return new Underlagsperiode(dato(fraOgMed), dato(tilOgMed));
+    }
+}